@@ -0,0 +1,34 @@
+package dataStore;
+
+import java.util.Arrays;
+
+/**
+ * Cost surface held on the heap in one flat array.
+ *
+ * @author yaw
+ */
+public class ArrayCostSurface extends CostSurface {
+
+    private double[] costs;     // [cellNum * 8 + neighborNum]
+
+    public ArrayCostSurface(int width, int height) {
+        super(width, height);
+        costs = new double[(width * height + 1) * 8];
+        Arrays.fill(costs, Double.MAX_VALUE);
+    }
+
+    public ArrayCostSurface(ArrayCostSurface surface) {
+        super(surface.getWidth(), surface.getHeight());
+        costs = surface.costs.clone();
+    }
+
+    @Override
+    public double getCost(int cellNum, int neighborNum) {
+        return costs[cellNum * 8 + neighborNum];
+    }
+
+    @Override
+    public void setCost(int cellNum, int neighborNum, double cost) {
+        costs[cellNum * 8 + neighborNum] = cost;
+    }
+}
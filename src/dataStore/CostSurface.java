@@ -0,0 +1,127 @@
+package dataStore;
+
+import java.util.Arrays;
+
+/**
+ * Cost of moving from each cell to each of its eight neighbors, addressed by
+ * cellNum * 8 + neighborNum. Cells are numbered from 1, so the entries for
+ * cell 0 are unused.
+ * Neighbor numbering starts in upper left as 0 and goes in clockwise direction.
+ * Subclasses decide where the costs are stored.
+ *
+ * @author yaw
+ */
+public abstract class CostSurface {
+
+    private int width;  // Number of columns
+    private int height;
+
+    private int[] neighborOffsets;  // [neighborNum] = neighborCell - centerCell
+    private int[] neighborNums;     // [neighborCell - centerCell + width + 1] = neighborNum, -1 if not a neighbor
+    private int[] borderMasks;  // [border flags] = bit per neighborNum that stays on the surface
+
+    protected CostSurface(int width, int height) {
+        this.width = width;
+        this.height = height;
+        makeNeighborTables();
+    }
+
+    private void makeNeighborTables() {
+        neighborOffsets = new int[]{-width - 1, -width, -width + 1, 1, width + 1, width, width - 1, -1};
+
+        // Fill from the last direction so the lowest number wins on narrow surfaces
+        neighborNums = new int[2 * width + 3];
+        Arrays.fill(neighborNums, -1);
+        for (int neighborNum = 7; neighborNum >= 0; neighborNum--) {
+            neighborNums[neighborOffsets[neighborNum] + width + 1] = neighborNum;
+        }
+
+        // Flags: 1 = left column, 2 = right column, 4 = top row, 8 = bottom row
+        borderMasks = new int[16];
+        for (int flags = 0; flags < 16; flags++) {
+            boolean left = (flags & 1) != 0;
+            boolean right = (flags & 2) != 0;
+            boolean top = (flags & 4) != 0;
+            boolean bottom = (flags & 8) != 0;
+            boolean[] onSurface = {!top && !left, !top, !top && !right, !right, !bottom && !right, !bottom, !bottom && !left, !left};
+            for (int neighborNum = 0; neighborNum < 8; neighborNum++) {
+                if (onSurface[neighborNum]) {
+                    borderMasks[flags] |= 1 << neighborNum;
+                }
+            }
+        }
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getNumCells() {
+        return width * height;
+    }
+
+    public int getNeighborOffset(int neighborNum) {
+        return neighborOffsets[neighborNum];
+    }
+
+    // Bit neighborNum is set if that neighbor of cellNum is on the surface (no wrapping across rows)
+    public int getNeighborMask(int cellNum) {
+        if (cellNum < 1 || cellNum > getNumCells()) {
+            return 0;
+        }
+        int x = (cellNum - 1) % width;
+        int y = (cellNum - 1) / width;
+        int flags = 0;
+        if (x == 0) {
+            flags |= 1;
+        }
+        if (x == width - 1) {
+            flags |= 2;
+        }
+        if (y == 0) {
+            flags |= 4;
+        }
+        if (y == height - 1) {
+            flags |= 8;
+        }
+        return borderMasks[flags];
+    }
+
+    public int getNeighborNum(int centerCell, int neighborCell) {
+        int index = neighborCell - centerCell + width + 1;
+        if (index < 0 || index >= neighborNums.length) {
+            return -1;
+        }
+        return neighborNums[index];
+    }
+
+    public abstract double getCost(int cellNum, int neighborNum);
+
+    public abstract void setCost(int cellNum, int neighborNum, double cost);
+
+    // Largest absolute difference between a stored cost and the cost it was given, for lossy storage
+    public double getMaxError() {
+        return 0;
+    }
+
+    // Largest relative difference between a stored cost and the cost it was given, for lossy storage
+    public double getMaxRelativeError() {
+        return 0;
+    }
+
+    // Cost between two cells, 0 for the same cell and Double.MAX_VALUE if they are not neighbors
+    public double getEdgeCost(int cell1, int cell2) {
+        if (cell1 == cell2) {
+            return 0;
+        }
+        int neighborNum = getNeighborNum(cell1, cell2);
+        if (neighborNum >= 0) {
+            return getCost(cell1, neighborNum);
+        }
+        return Double.MAX_VALUE;
+    }
+}
@@ -34,6 +34,7 @@ import java.text.SimpleDateFormat;
 import java.util.Date;
 import java.util.TreeMap;
 
+import solver.ContractionHierarchy;
 import solver.Heuristic;
 
 /**
@@ -53,6 +54,8 @@ public class DataInOut {
         DataInOut.scenario = scenario;
         DataInOut.data = data;
 
+        System.out.println("Loading Settings...");
+        loadSettings();
         System.out.println("Loading Geography...");
         loadGeography();
         System.out.println("Loading Source Data...");
@@ -70,8 +73,60 @@ public class DataInOut {
         System.out.println("Data Loaded.");
     }
 
+    // Optional run settings for the scenario, one "Key Value" pair per line (e.g. "Incremental true")
+    private static void loadSettings() {
+        HashMap<String, String> settings = new HashMap<>();
+        String settingsPath = basePath + "/" + dataset + "/Scenarios/" + scenario + "/Settings.txt";
+        if (new File(settingsPath).exists()) {
+            try (BufferedReader br = new BufferedReader(new FileReader(settingsPath))) {
+                String line = br.readLine();
+                while (line != null) {
+                    String[] elements = line.trim().split("\\s+");
+                    if (elements.length > 1) {
+                        settings.put(elements[0], elements[1]);
+                    }
+                    line = br.readLine();
+                }
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        data.setSettings(settings);
+    }
+
     private static void loadGeography() {
         String path = basePath + "/" + dataset + "/BaseData/CostNetwork/Construction Costs.txt";
+
+        // Datasets may keep only the binary cost network or cost rasters
+        File binaryFile = new File(basePath + "/" + dataset + "/BaseData/CostNetwork/Construction Costs.bin");
+        File rasterFile = new File(basePath + "/" + dataset + "/BaseData/CostSurface/Ascii/construction.asc");
+        if (!new File(path).exists() && !binaryFile.exists() && rasterFile.exists()) {
+            try (BufferedReader br = new BufferedReader(new FileReader(rasterFile))) {
+                HashMap<String, Double> header = readRasterHeader(br);
+                data.setWidth(header.get("ncols").intValue());
+                data.setHeight(header.get("nrows").intValue());
+                data.setLowerLeftX(getRasterCorner(header, "x"));
+                data.setLowerLeftY(getRasterCorner(header, "y"));
+                data.setCellSize(header.get("cellsize"));
+                return;
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+        if (!new File(path).exists() && binaryFile.exists()) {
+            try {
+                MappedCostSurface surface = MappedCostSurface.open(binaryFile);
+                data.setWidth(surface.getWidth());
+                data.setHeight(surface.getHeight());
+                data.setLowerLeftX(surface.getLowerLeftX());
+                data.setLowerLeftY(surface.getLowerLeftY());
+                data.setCellSize(surface.getCellSize());
+                return;
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
+            }
+        }
+
         try (BufferedReader br = new BufferedReader(new FileReader(path))) {
             br.readLine();
             br.readLine();
@@ -102,68 +157,430 @@ public class DataInOut {
         }
     }
 
+    // Read the text cost network onto the heap. With a tile cache size, costs are read through tile caches instead.
+    // The binary cost network is mapped if the dataset asks for it or has no text files.
     public static void loadCosts() {
-        String path = basePath + "/" + dataset + "/BaseData/CostNetwork/Construction Costs.txt";
-        double[][] rightOfWayCosts = new double[0][0];
-        double[][] constructionCosts = new double[0][0];
-        double[][] routingCosts = new double[0][0];
-        try (BufferedReader br = new BufferedReader(new FileReader(path))) {
-            for (int i = 0; i < 8; i++) {
-                br.readLine();
+        String costPath = basePath + "/" + dataset + "/BaseData/CostNetwork/";
+        if (usesRasterCosts()) {
+            loadRasterCosts();
+            return;
+        }
+        if (data.getTileCacheSize() > 0 && loadTiledCosts()) {
+            return;
+        }
+        if ((data.getMapCosts() || !new File(costPath + "Construction Costs.txt").exists()) && loadMappedCosts()) {
+            return;
+        }
+        loadTextCosts();
+    }
+
+    // Map the binary cost network, converting the text files first if the binary files are missing or older.
+    // False if the binary files cannot be used.
+    private static boolean loadMappedCosts() {
+        String costPath = basePath + "/" + dataset + "/BaseData/CostNetwork/";
+        if (!isBinaryCostNetworkCurrent()) {
+            convertCostNetwork();
+        }
+
+        try {
+            MappedCostSurface constructionCosts = openCostNetworkFile(new File(costPath + "Construction Costs.bin"));
+            MappedCostSurface rightOfWayCosts = null;
+            File rightOfWayFile = new File(costPath + "RightOfWay Costs.bin");
+            if (rightOfWayFile.exists()) {
+                rightOfWayCosts = openCostNetworkFile(rightOfWayFile);
             }
+            MappedCostSurface routingCosts = openCostNetworkFile(new File(costPath + "Routing Costs.bin"));
+
+            data.setConstructionCosts(storeCosts("Construction", constructionCosts));
+            data.setRightOfWayCosts(storeCosts("Right of way", rightOfWayCosts));
+            data.setRoutingCosts(storeCosts("Routing", routingCosts));
+            return true;
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+        return false;
+    }
+
+    // Read the cost network through tile caches of the dataset's tile cache size, writing the tile files first if
+    // they are missing, older than the cost network, or at another precision. False if they cannot be used.
+    // Raster costs already keep one value per cell and are not tiled.
+    private static boolean loadTiledCosts() {
+        String costPath = basePath + "/" + dataset + "/BaseData/CostNetwork/";
+        if (!areCostTilesCurrent() && !writeCostTiles()) {
+            return false;
+        }
+
+        try {
+            TiledCostSurface constructionCosts = TiledCostSurface.open(new File(costPath + "Construction Costs.tiles"), data.getTileCacheSize());
+            TiledCostSurface rightOfWayCosts = null;
+            File rightOfWayFile = new File(costPath + "RightOfWay Costs.tiles");
+            if (rightOfWayFile.exists()) {
+                rightOfWayCosts = TiledCostSurface.open(rightOfWayFile, data.getTileCacheSize());
+            }
+            TiledCostSurface routingCosts = TiledCostSurface.open(new File(costPath + "Routing Costs.tiles"), data.getTileCacheSize());
+
+            data.setConstructionCosts(storeCosts("Construction", constructionCosts));
+            data.setRightOfWayCosts(storeCosts("Right of way", rightOfWayCosts));
+            data.setRoutingCosts(storeCosts("Routing", routingCosts));
+            return true;
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+        return false;
+    }
 
-            // Create cost arrays.
-            rightOfWayCosts = new double[data.getWidth() * data.getHeight() + 1][8];
-            constructionCosts = new double[data.getWidth() * data.getHeight() + 1][8];
-            routingCosts = new double[data.getWidth() * data.getHeight() + 1][8];
-            for (int i = 0; i < constructionCosts.length; i++) {
-                for (int j = 0; j < constructionCosts[i].length; j++) {
-                    rightOfWayCosts[i][j] = Double.MAX_VALUE;
-                    constructionCosts[i][j] = Double.MAX_VALUE;
-                    routingCosts[i][j] = Double.MAX_VALUE;
+    // Write the cost network to tile files, read from the binary files if they are current and from the text files
+    // otherwise. Construction costs are written last, so their file marks a complete conversion.
+    private static boolean writeCostTiles() {
+        String costPath = basePath + "/" + dataset + "/BaseData/CostNetwork/";
+        System.out.println("Writing Cost Tiles...");
+        try {
+            CostSurface[] costs;
+            if (isBinaryCostNetworkCurrent()) {
+                costs = new CostSurface[3];
+                costs[0] = openCostNetworkFile(new File(costPath + "Construction Costs.bin"));
+                File rightOfWayFile = new File(costPath + "RightOfWay Costs.bin");
+                if (rightOfWayFile.exists()) {
+                    costs[1] = openCostNetworkFile(rightOfWayFile);
                 }
+                costs[2] = openCostNetworkFile(new File(costPath + "Routing Costs.bin"));
+            } else if (new File(costPath + "Construction Costs.txt").exists()) {
+                costs = readTextCosts();
+            } else {
+                return false;
             }
 
-            // Load construction costs.
-            String line = br.readLine();
-            while (line != null) {
-                String costLine = br.readLine();
-                String[] costs = costLine.split("\\s+");
-                String[] cells = line.split("\\s+");
-                int centerCell = Integer.parseInt(cells[0]);
-                for (int i = 1; i < costs.length; i++) {
-                    constructionCosts[centerCell][data.getNeighborNum(centerCell, Integer.parseInt(cells[i]))] = Double.parseDouble(costs[i]);
+            int tileSize = TiledCostSurface.DEFAULT_TILE_SIZE;
+            String precision = data.getCostPrecision();
+            TiledCostSurface.write(new File(costPath + "Routing Costs.tiles"), costs[2], tileSize, precision);
+            File rightOfWayFile = new File(costPath + "RightOfWay Costs.tiles");
+            if (costs[1] != null) {
+                TiledCostSurface.write(rightOfWayFile, costs[1], tileSize, precision);
+            } else {
+                rightOfWayFile.delete();
+            }
+            TiledCostSurface.write(new File(costPath + "Construction Costs.tiles"), costs[0], tileSize, precision);
+            return true;
+        } catch (IOException e) {
+            System.out.println("Could not write cost tiles: " + e.getMessage());
+            return false;
+        }
+    }
+
+    // Tile files exist at the dataset's precision and are at least as new as every cost network file
+    private static boolean areCostTilesCurrent() {
+        String costPath = basePath + "/" + dataset + "/BaseData/CostNetwork/";
+        File constructionFile = new File(costPath + "Construction Costs.tiles");
+        if (!constructionFile.exists() || !new File(costPath + "Routing Costs.tiles").exists()) {
+            return false;
+        }
+        for (String name : new String[]{"Construction Costs.txt", "RightOfWay Costs.txt", "Routing Costs.txt", "Construction Costs.bin", "RightOfWay Costs.bin", "Routing Costs.bin"}) {
+            File costFile = new File(costPath + name);
+            if (costFile.exists() && costFile.lastModified() > constructionFile.lastModified()) {
+                return false;
+            }
+        }
+        try {
+            TiledCostSurface tiles = TiledCostSurface.open(constructionFile, 1);
+            return tiles.getPrecision().equals(data.getCostPrecision()) && tiles.getWidth() == data.getWidth() && tiles.getHeight() == data.getHeight();
+        } catch (IOException e) {
+            return false;
+        }
+    }
+
+    // Costs come from the rasters if asked for, or if there is no cost network
+    private static boolean usesRasterCosts() {
+        String costPath = basePath + "/" + dataset + "/BaseData/CostNetwork/";
+        String rasterPath = basePath + "/" + dataset + "/BaseData/CostSurface/Ascii/";
+        boolean hasCostNetwork = new File(costPath + "Construction Costs.txt").exists() || new File(costPath + "Construction Costs.bin").exists();
+        return (data.getUseRasterCosts() || !hasCostNetwork) && new File(rasterPath + "construction.asc").exists();
+    }
+
+    // Load the contraction hierarchy of the routing costs saved next to the cost files. It is built and saved first
+    // if it is missing or older than any of the cost files.
+    public static ContractionHierarchy loadRoutingHierarchy() {
+        String[] costFiles = {"Construction Costs.txt", "RightOfWay Costs.txt", "Routing Costs.txt", "Construction Costs.bin", "RightOfWay Costs.bin", "Routing Costs.bin"};
+        String costPath = basePath + "/" + dataset + "/BaseData/CostNetwork/";
+        if (usesRasterCosts()) {
+            costFiles = new String[]{"construction.asc", "rightofway.asc", "routing.asc"};
+            costPath = basePath + "/" + dataset + "/BaseData/CostSurface/Ascii/";
+        }
+        File hierarchyFile = new File(costPath + "Routing Hierarchy.bin");
+
+        boolean current = hierarchyFile.exists();
+        for (String name : costFiles) {
+            File costFile = new File(costPath + name);
+            if (costFile.exists() && costFile.lastModified() > hierarchyFile.lastModified()) {
+                current = false;
+            }
+        }
+        if (current) {
+            try {
+                ContractionHierarchy hierarchy = ContractionHierarchy.load(hierarchyFile);
+                if (hierarchy.getWidth() == data.getWidth() && hierarchy.getHeight() == data.getHeight()) {
+                    return hierarchy;
                 }
-                line = br.readLine();
+            } catch (IOException e) {
+                System.out.println(e.getMessage());
             }
+        }
+
+        System.out.println("Building Routing Hierarchy...");
+        long startTime = System.nanoTime();
+        ContractionHierarchy hierarchy = new ContractionHierarchy(data.getRoutingCosts());
+        System.out.println("Routing Hierarchy: " + hierarchy.getNumShortcuts() + " shortcuts in " + Math.round((System.nanoTime() - startTime) / 1e6) + " ms");
+        try {
+            hierarchy.save(hierarchyFile);
+        } catch (IOException e) {
+            System.out.println("Could not save routing hierarchy: " + e.getMessage());
+        }
+        return hierarchy;
+    }
+
+    private static void loadTextCosts() {
+        CostSurface[] costs = readTextCosts();
+        data.setConstructionCosts(storeCosts("Construction", costs[0]));
+        data.setRightOfWayCosts(storeCosts("Right of way", costs[1]));
+        data.setRoutingCosts(storeCosts("Routing", costs[2]));
+    }
+
+    // Read the text cost network onto the heap as construction, right of way, and routing costs. Right of way costs
+    // are null if the dataset has none.
+    private static CostSurface[] readTextCosts() {
+        String costPath = basePath + "/" + dataset + "/BaseData/CostNetwork/";
+
+        // Load construction costs.
+        CostSurface constructionCosts = makeCostSurface();
+        try {
+            readCostFile(costPath + "Construction Costs.txt", constructionCosts);
         } catch (IOException e) {
             System.out.println(e.getMessage());
         }
 
         // Load right of way costs.  
-        path = basePath + "/" + dataset + "/BaseData/CostNetwork/RightOfWay Costs.txt";
+        CostSurface rightOfWayCosts = makeCostSurface();
+        try {
+            readCostFile(costPath + "RightOfWay Costs.txt", rightOfWayCosts);
+        } catch (IOException e) {
+            rightOfWayCosts = null;
+        }
+        
+        // Load routing costs.
+        CostSurface routingCosts = makeCostSurface();
+        try {
+            readCostFile(costPath + "Routing Costs.txt", routingCosts);
+        } catch (IOException e) {
+            fillRoutingCosts(routingCosts, constructionCosts, rightOfWayCosts);
+        }
+        return new CostSurface[]{constructionCosts, rightOfWayCosts, routingCosts};
+    }
+
+    // Load per-cell cost rasters. Edge costs are derived from cell values as they are used.
+    private static void loadRasterCosts() {
+        String rasterPath = basePath + "/" + dataset + "/BaseData/CostSurface/Ascii/";
+
+        // Load construction costs.
+        RasterCostSurface constructionCosts = new RasterCostSurface(data.getWidth(), data.getHeight());
+        try {
+            readRaster(rasterPath + "construction.asc", constructionCosts);
+        } catch (IOException e) {
+            System.out.println(e.getMessage());
+        }
+
+        // Load right of way costs.
+        RasterCostSurface rightOfWayCosts = new RasterCostSurface(data.getWidth(), data.getHeight());
+        try {
+            readRaster(rasterPath + "rightofway.asc", rightOfWayCosts);
+        } catch (IOException e) {
+            rightOfWayCosts = null;
+        }
+
+        // Load routing costs, defaulting to construction plus right of way costs.
+        RasterCostSurface routingCosts = new RasterCostSurface(data.getWidth(), data.getHeight());
+        try {
+            readRaster(rasterPath + "routing.asc", routingCosts);
+        } catch (IOException e) {
+            if (rightOfWayCosts != null) {
+                routingCosts = new RasterCostSurface(constructionCosts, rightOfWayCosts);
+            } else {
+                routingCosts = constructionCosts;
+            }
+        }
+
+        data.setConstructionCosts(storeCosts("Construction", constructionCosts));
+        data.setRightOfWayCosts(storeCosts("Right of way", rightOfWayCosts));
+        data.setRoutingCosts(storeCosts("Routing", routingCosts));
+    }
+
+    // Read an ESRI ASCII raster into surface, one row of cells per line starting from the top
+    private static void readRaster(String path, RasterCostSurface surface) throws IOException {
         try (BufferedReader br = new BufferedReader(new FileReader(path))) {
-            for (int i = 0; i < 8; i++) {
-                br.readLine();
+            HashMap<String, Double> header = readRasterHeader(br);
+            if (header.get("ncols").intValue() != surface.getWidth() || header.get("nrows").intValue() != surface.getHeight()) {
+                throw new IOException(path + " does not match the dataset geography.");
             }
+            double noData = header.containsKey("nodata_value") ? header.get("nodata_value") : Double.NaN;
 
+            int cellNum = 1;
             String line = br.readLine();
-            while (line != null) {
-                String costLine = br.readLine();
-                String[] costs = costLine.split("\\s+");
-                String[] cells = line.split("\\s+");
-                int centerCell = Integer.parseInt(cells[0]);
-                for (int i = 1; i < costs.length; i++) {
-                    rightOfWayCosts[centerCell][data.getNeighborNum(centerCell, Integer.parseInt(cells[i]))] = Double.parseDouble(costs[i]);
+            while (line != null && cellNum <= surface.getNumCells()) {
+                line = line.trim();
+                if (!line.isEmpty()) {
+                    for (String element : line.split("\\s+")) {
+                        double value = Double.parseDouble(element);
+                        surface.setValue(cellNum++, value == noData ? Double.NaN : value);
+                    }
                 }
                 line = br.readLine();
             }
+        }
+    }
+
+    // Lower left corner of a raster along axis "x" or "y". Headers give either the corner or the center of the lower
+    // left cell.
+    private static double getRasterCorner(HashMap<String, Double> header, String axis) throws IOException {
+        if (header.containsKey(axis + "llcorner")) {
+            return header.get(axis + "llcorner");
+        } else if (header.containsKey(axis + "llcenter")) {
+            return header.get(axis + "llcenter") - header.get("cellsize") / 2;
+        }
+        throw new IOException("Raster header has neither " + axis + "llcorner nor " + axis + "llcenter.");
+    }
+
+    // Read the header of an ESRI ASCII raster, keyed by lower case name, leaving br at the first row of values
+    private static HashMap<String, Double> readRasterHeader(BufferedReader br) throws IOException {
+        HashMap<String, Double> header = new HashMap<>();
+        while (true) {
+            br.mark(1024);
+            String line = br.readLine();
+            if (line == null) {
+                break;
+            }
+            String[] elements = line.trim().split("\\s+");
+            if (elements.length != 2 || !Character.isLetter(elements[0].charAt(0))) {
+                br.reset();
+                break;
+            }
+            header.put(elements[0].toLowerCase(), Double.parseDouble(elements[1]));
+        }
+        for (String key : new String[]{"ncols", "nrows", "cellsize"}) {
+            if (!header.containsKey(key)) {
+                throw new IOException("Raster header has no " + key + ".");
+            }
+        }
+        return header;
+    }
+
+    // Surface to read text costs into. Lossy modes read into floats so the full surface is never held as doubles.
+    private static CostSurface makeCostSurface() {
+        if (data.getCostPrecision().equals("double")) {
+            return new ArrayCostSurface(data.getWidth(), data.getHeight());
+        }
+        return new FloatCostSurface(data.getWidth(), data.getHeight());
+    }
+
+    // Convert loaded costs to the storage precision of the dataset and report the worst case error
+    private static CostSurface storeCosts(String name, CostSurface costs) {
+        if (costs == null) {
+            return null;
+        }
+        if (costs instanceof TiledCostSurface) {
+            if (!data.getCostPrecision().equals("double")) {
+                System.out.println(name + " cost tiles stored as " + data.getCostPrecision() + ". Worst case error per cell edge: " + costs.getMaxError() + " (" + costs.getMaxRelativeError() * 100 + "%)");
+            }
+            return costs;
+        }
+        if (costs instanceof RasterCostSurface) {
+            System.out.println(name + " costs derived from a raster. Worst case error per cell edge: " + costs.getMaxError() + " (" + costs.getMaxRelativeError() * 100 + "%)");
+            return costs;
+        }
+        String precision = data.getCostPrecision();
+        if (precision.equals("double")) {
+            return costs;
+        } else if (precision.equals("float")) {
+            if (!(costs instanceof FloatCostSurface)) {
+                costs = new FloatCostSurface(costs);
+            }
+        } else if (precision.equals("quantized")) {
+            costs = new QuantizedCostSurface(costs);
+        } else {
+            throw new IllegalArgumentException("Unknown cost precision " + precision);
+        }
+        System.out.println(name + " costs stored as " + precision + ". Worst case error per cell edge: " + costs.getMaxError() + " (" + costs.getMaxRelativeError() * 100 + "%)");
+        return costs;
+    }
+
+    // Write the text cost network of the dataset to binary files that loadCosts can map. Construction costs are
+    // finished last, so their file marks a complete conversion.
+    public static boolean convertCostNetwork() {
+        String costPath = basePath + "/" + dataset + "/BaseData/CostNetwork/";
+        if (!new File(costPath + "Construction Costs.txt").exists()) {
+            return false;
+        }
+        System.out.println("Converting Cost Network...");
+
+        try {
+            MappedCostSurface constructionCosts = createCostNetworkFile(new File(costPath + "Construction Costs.bin"));
+            readCostFile(costPath + "Construction Costs.txt", constructionCosts);
+
+            MappedCostSurface rightOfWayCosts = null;
+            File rightOfWayFile = new File(costPath + "RightOfWay Costs.bin");
+            if (new File(costPath + "RightOfWay Costs.txt").exists()) {
+                rightOfWayCosts = createCostNetworkFile(rightOfWayFile);
+                readCostFile(costPath + "RightOfWay Costs.txt", rightOfWayCosts);
+                rightOfWayCosts.finish();
+            } else {
+                rightOfWayFile.delete();
+            }
+
+            MappedCostSurface routingCosts = createCostNetworkFile(new File(costPath + "Routing Costs.bin"));
+            if (new File(costPath + "Routing Costs.txt").exists()) {
+                readCostFile(costPath + "Routing Costs.txt", routingCosts);
+            } else {
+                fillRoutingCosts(routingCosts, constructionCosts, rightOfWayCosts);
+            }
+            routingCosts.finish();
+
+            constructionCosts.finish();
+            return true;
         } catch (IOException e) {
-            rightOfWayCosts = null;
+            System.out.println("Could not convert cost network: " + e.getMessage());
+            return false;
         }
-        
-        // Load routing costs.
-        path = basePath + "/" + dataset + "/BaseData/CostNetwork/Routing Costs.txt";
+    }
+
+    // Binary files exist and are at least as new as every text file
+    private static boolean isBinaryCostNetworkCurrent() {
+        String costPath = basePath + "/" + dataset + "/BaseData/CostNetwork/";
+        File constructionFile = new File(costPath + "Construction Costs.bin");
+        if (!constructionFile.exists() || !new File(costPath + "Routing Costs.bin").exists()) {
+            return false;
+        }
+        for (String name : new String[]{"Construction Costs.txt", "RightOfWay Costs.txt", "Routing Costs.txt"}) {
+            File textFile = new File(costPath + name);
+            if (textFile.exists() && textFile.lastModified() > constructionFile.lastModified()) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static MappedCostSurface createCostNetworkFile(File file) throws IOException {
+        return MappedCostSurface.create(file, data.getWidth(), data.getHeight(), data.getLowerLeftX(), data.getLowerLeftY(), data.getCellSize());
+    }
+
+    private static MappedCostSurface openCostNetworkFile(File file) throws IOException {
+        MappedCostSurface surface = MappedCostSurface.open(file);
+        if (surface.getWidth() != data.getWidth() || surface.getHeight() != data.getHeight()) {
+            throw new IOException(file.getName() + " does not match the dataset geography.");
+        }
+        return surface;
+    }
+
+    // Read a text cost file of neighbor cell lines followed by cost lines. Costs to cells that are not neighbors are
+    // skipped and reported.
+    private static void readCostFile(String path, CostSurface surface) throws IOException {
+        int numSkipped = 0;
         try (BufferedReader br = new BufferedReader(new FileReader(path))) {
             for (int i = 0; i < 8; i++) {
                 br.readLine();
@@ -176,24 +593,34 @@ public class DataInOut {
                 String[] cells = line.split("\\s+");
                 int centerCell = Integer.parseInt(cells[0]);
                 for (int i = 1; i < costs.length; i++) {
-                    routingCosts[centerCell][data.getNeighborNum(centerCell, Integer.parseInt(cells[i]))] = Double.parseDouble(costs[i]);
+                    int neighborNum = surface.getNeighborNum(centerCell, Integer.parseInt(cells[i]));
+                    if (neighborNum < 0) {
+                        if (numSkipped++ == 0) {
+                            System.out.println("Error: " + path + " has a cost from cell " + centerCell + " to cell " + cells[i] + ", which is not a neighbor.");
+                        }
+                        continue;
+                    }
+                    surface.setCost(centerCell, neighborNum, Double.parseDouble(costs[i]));
                 }
                 line = br.readLine();
             }
-        } catch (IOException e) {
-            for (int i = 0; i < routingCosts.length; i++) {
-                for (int j = 0; j < routingCosts[i].length; j++) {
-                    routingCosts[i][j] = constructionCosts[i][j];
-                    if (rightOfWayCosts != null) {
-                        routingCosts[i][j] += rightOfWayCosts[i][j];
-                    }
+        }
+        if (numSkipped > 0) {
+            System.out.println("Error: Skipped " + numSkipped + " costs between cells that are not neighbors in " + path);
+        }
+    }
+
+    // Routing costs default to construction plus right of way costs
+    private static void fillRoutingCosts(CostSurface routingCosts, CostSurface constructionCosts, CostSurface rightOfWayCosts) {
+        for (int i = 0; i <= routingCosts.getNumCells(); i++) {
+            for (int j = 0; j < 8; j++) {
+                double cost = constructionCosts.getCost(i, j);
+                if (rightOfWayCosts != null) {
+                    cost += rightOfWayCosts.getCost(i, j);
                 }
+                routingCosts.setCost(i, j, cost);
             }
         }
-        
-        data.setConstructionCosts(constructionCosts);
-        data.setRightOfWayCosts(rightOfWayCosts);
-        data.setRoutingCosts(routingCosts);
     }
 
     private static void loadSources() {
@@ -548,9 +975,7 @@ public class DataInOut {
         // Collect data.
         Source[] sources = heuristic.getSources();
         Sink[] sinks = heuristic.getSinks();
-        int[] graphVertices = heuristic.getGraphVertices();
-        HeuristicEdge[][] adjacencyMatrix = heuristic.getAdjacencyMatrix();
-        HashMap<Integer, Integer> cellNumToVertexNum = heuristic.getCellVertexMap();
+        HeuristicGraph graph = heuristic.getGraph();
         double crf = data.getCrf();
 
         try (BufferedWriter bw = new BufferedWriter(new FileWriter(solutionDirectory.toString() + "/solution.txt"))) {
@@ -577,14 +1002,12 @@ public class DataInOut {
             }
 
             bw.write("EdgeSrc\tEdgeSnk\tFlowAmount\tCost\n");
-            for (int u = 0; u < graphVertices.length; u++) {
-                for (int v = 0; v < graphVertices.length; v++) {
-                    HeuristicEdge edge = adjacencyMatrix[u][v];
-                    if (edge != null && edge.currentHostingAmount > 0) {
-                        double flowAmount = edge.currentHostingAmount;
-                        double cost = edge.buildCost[edge.currentSize] + edge.transportCost[edge.currentSize] * flowAmount;
-                        bw.write(edge.v1 + "\t" + edge.v2 + "\t" + flowAmount + "\t" + cost + "\n");
-                    }
+            for (int arc = 0; arc < graph.getNumArcs(); arc++) {
+                if (graph.getHostingAmount(arc) > 0) {
+                    double flowAmount = graph.getHostingAmount(arc);
+                    int size = graph.getSize(arc);
+                    double cost = graph.getBuildCost(arc, size) + graph.getTransportCost(arc, size) * flowAmount;
+                    bw.write(graph.getVertexCell(graph.getTail(arc)) + "\t" + graph.getVertexCell(graph.getHead(arc)) + "\t" + flowAmount + "\t" + cost + "\n");
                 }
             }
         } catch (IOException e) {
@@ -5,7 +5,10 @@ import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Set;
+import solver.ContractionHierarchy;
 import solver.Solver;
+import utilities.LongIntMap;
+import static utilities.Utilities.*;
 
 /**
  *
@@ -35,10 +38,18 @@ public class DataStorer {
     // Raw network information
     private int[][] shortestPaths;   // [pathNum] = [nodeInPath1, nodeInPath2,...]
     private double[] shortestPathCosts;  //[pathNum] = costForPathNum
-    private double[][] rightOfWayCosts;
-    private double[][] constructionCosts;
-    private double[][] routingCosts;
-    private double[][] modifiedRoutingCosts;
+    private LongIntMap shortestPathIndex;  // [endpoint pair key] = group of paths between the endpoints
+    private int[][] shortestPathGroups;    // [group] = pathNums between the same endpoints
+    private CostSurface rightOfWayCosts;
+    private CostSurface constructionCosts;
+    private CostSurface routingCosts;
+    private CostSurface modifiedRoutingCosts;
+    private ContractionHierarchy routingHierarchy;  // Over unmodified routing costs
+    private boolean mapCosts = false;   // Map the binary cost network instead of reading the text files onto the heap
+    private String costPrecision = "double";    // Storage of loaded cost surfaces: "double", "float", or "quantized"
+    private boolean useRasterCosts = false;     // Derive edge costs from per-cell rasters even if a cost network exists
+    private int tileCacheSize = 0;  // Cost tiles kept in memory per cost network layer, 0 to not read costs through tiles
+    private HashMap<String, String> settings = new HashMap<>();  // Run settings from the scenario's Settings.txt
 
     // Candidate network graph information
     private int[] graphVertices;    // Set of all vertices in graph (source/sink/junction)
@@ -93,8 +104,75 @@ public class DataStorer {
         if (pathDetails != null) {
             shortestPaths = (int[][]) pathDetails[0];
             shortestPathCosts = (double[]) pathDetails[1];
+            indexShortestPaths();
             DataInOut.saveShortestPathsNetwork();
         }
+        printTileCacheHitRates();
+    }
+
+    // Path numbers of the raw paths between two cells, in either direction
+    public int[] getShortestPathsBetween(int cell1, int cell2) {
+        if (shortestPathIndex == null) {
+            getShortestPathEdges();
+        }
+        if (shortestPathIndex == null) {
+            return new int[0];
+        }
+        int group = shortestPathIndex.get(getEndpointKey(cell1, cell2));
+        return group < 0 ? new int[0] : shortestPathGroups[group];
+    }
+
+    // Index raw paths by their unordered endpoints
+    private void indexShortestPaths() {
+        shortestPathIndex = null;
+        shortestPathGroups = null;
+        if (shortestPaths == null) {
+            return;
+        }
+
+        // Number the endpoint pairs and count their paths, then fill each group
+        LongIntMap index = new LongIntMap(shortestPaths.length);
+        int[] pathGroups = new int[shortestPaths.length];
+        int[] groupSizes = new int[shortestPaths.length];
+        int numGroups = 0;
+        for (int pathNum = 0; pathNum < shortestPaths.length; pathNum++) {
+            int[] path = shortestPaths[pathNum];
+            long key = getEndpointKey(path[0], path[path.length - 1]);
+            int group = index.get(key);
+            if (group < 0) {
+                group = numGroups++;
+                index.put(key, group);
+            }
+            pathGroups[pathNum] = group;
+            groupSizes[group]++;
+        }
+        int[][] groups = new int[numGroups][];
+        for (int group = 0; group < numGroups; group++) {
+            groups[group] = new int[groupSizes[group]];
+            groupSizes[group] = 0;
+        }
+        for (int pathNum = 0; pathNum < shortestPaths.length; pathNum++) {
+            int group = pathGroups[pathNum];
+            groups[group][groupSizes[group]++] = pathNum;
+        }
+        shortestPathGroups = groups;
+        shortestPathIndex = index;
+    }
+
+    private static long getEndpointKey(int cell1, int cell2) {
+        return ((long) Math.min(cell1, cell2) << 32) | (Math.max(cell1, cell2) & 0xffffffffL);
+    }
+
+    // Report how often cost tiles were found in memory
+    public void printTileCacheHitRates() {
+        String[] names = {"Construction", "Right of way", "Routing"};
+        CostSurface[] layers = {constructionCosts, rightOfWayCosts, routingCosts};
+        for (int i = 0; i < layers.length; i++) {
+            if (layers[i] instanceof TiledCostSurface) {
+                TiledCostSurface tiles = (TiledCostSurface) layers[i];
+                System.out.println(names[i] + " cost tile cache hit rate: " + round(tiles.getHitRate() * 100, 2) + "% of " + tiles.getNumLookups() + " lookups");
+            }
+        }
     }
 
     public void generateDelaunayPairs() {
@@ -112,10 +190,9 @@ public class DataStorer {
             graphEdgeCosts = (HashMap<Edge, Double>) graphComponents[1];
             graphEdgeRoutes = (HashMap<Edge, int[]>) graphComponents[2];
 
-            // Make right of way and construction costs
-            Object[] costComponents = solver.makeComponentCosts();
-            graphEdgeRightOfWayCosts = (HashMap<Edge, Double>) costComponents[0];
-            graphEdgeConstructionCosts = (HashMap<Edge, Double>) costComponents[1];
+            // Right of way and construction costs, summed along with edge costs
+            graphEdgeRightOfWayCosts = (HashMap<Edge, Double>) graphComponents[3];
+            graphEdgeConstructionCosts = (HashMap<Edge, Double>) graphComponents[4];
 
             DataInOut.saveCandidateGraph();
         }
@@ -125,10 +202,12 @@ public class DataStorer {
         if (constructionCosts == null) {
             DataInOut.loadCosts();
 
-            // Make right of way and construction costs
-            Object[] costComponents = solver.makeComponentCosts();
-            graphEdgeRightOfWayCosts = (HashMap<Edge, Double>) costComponents[0];
-            graphEdgeConstructionCosts = (HashMap<Edge, Double>) costComponents[1];
+            // Make right of way and construction costs for a candidate graph loaded without them
+            if (graphEdgeRoutes != null && graphEdgeConstructionCosts == null) {
+                Object[] costComponents = solver.makeComponentCosts();
+                graphEdgeRightOfWayCosts = (HashMap<Edge, Double>) costComponents[0];
+                graphEdgeConstructionCosts = (HashMap<Edge, Double>) costComponents[1];
+            }
         }
     }
 
@@ -195,43 +274,50 @@ public class DataStorer {
 
     // Get edge weight in one of the base cost surfaces.
     public double getEdgeWeight(int cell1, int cell2, String type) {
+        int neighborNum = getNeighborNum(cell1, cell2);
         if (cell1 == cell2) {
             return 0;
-        } else if (getNeighborNum(cell1, cell2) >= 0 && getNeighborNum(cell1, cell2) < 8) {
+        } else if (neighborNum >= 0) {
             if (type.equals("r")) {
-                return routingCosts[cell1][getNeighborNum(cell1, cell2)];
+                return routingCosts.getCost(cell1, neighborNum);
             } else if (type.equals("c")) {
                 if (rightOfWayCosts != null) {
-                    return constructionCosts[cell1][getNeighborNum(cell1, cell2)] + rightOfWayCosts[cell1][getNeighborNum(cell1, cell2)];
+                    return constructionCosts.getCost(cell1, neighborNum) + rightOfWayCosts.getCost(cell1, neighborNum);
                 } else {
-                    return constructionCosts[cell1][getNeighborNum(cell1, cell2)];
+                    return constructionCosts.getCost(cell1, neighborNum);
                 }
             }
         }
         return Double.MAX_VALUE;
     }
 
+    // Construction and right of way cost of one step into components[0] and [1], from a single neighbor lookup.
+    // Their sum is the "c" edge weight.
+    public void getEdgeCostComponents(int cell1, int cell2, double[] components) {
+        int neighborNum = getNeighborNum(cell1, cell2);
+        components[0] = 0;
+        components[1] = 0;
+        if (cell1 != cell2 && neighborNum >= 0) {
+            components[0] = constructionCosts.getCost(cell1, neighborNum);
+            if (rightOfWayCosts != null) {
+                components[1] = rightOfWayCosts.getCost(cell1, neighborNum);
+            }
+        } else if (cell1 != cell2) {
+            components[0] = Double.MAX_VALUE;
+        }
+    }
+
     public double getEdgeRightOfWayCost(int cell1, int cell2) {
         // Catch if right of way costs are not used.
         if (rightOfWayCosts == null) {
             return 0;
         }
         
-        if (cell1 == cell2) {
-            return 0;
-        } else if (getNeighborNum(cell1, cell2) >= 0 && getNeighborNum(cell1, cell2) < 8) {
-            return rightOfWayCosts[cell1][getNeighborNum(cell1, cell2)];
-        }
-        return Double.MAX_VALUE;
+        return rightOfWayCosts.getEdgeCost(cell1, cell2);
     }
 
     public double getEdgeConstructionCost(int cell1, int cell2) {
-        if (cell1 == cell2) {
-            return 0;
-        } else if (getNeighborNum(cell1, cell2) >= 0 && getNeighborNum(cell1, cell2) < 8) {
-            return constructionCosts[cell1][getNeighborNum(cell1, cell2)];
-        }
-        return Double.MAX_VALUE;
+        return constructionCosts.getEdgeCost(cell1, cell2);
     }
 
     // Cell number to column number, row number. (column and row numbering start at 1)
@@ -283,26 +369,10 @@ public class DataStorer {
         return neighbors;
     }
 
+    // Uses the neighbor table of the routing costs, so costs must be loaded
     public int getNeighborNum(int centerCell, int neighborCell) {
         // NOTE: Neighbor numbering starts in upper left as 0 and goes in clockwise direction.
-        if (neighborCell == centerCell - width - 1) {
-            return 0;
-        } else if (neighborCell == centerCell - width) {
-            return 1;
-        } else if (neighborCell == centerCell - width + 1) {
-            return 2;
-        } else if (neighborCell == centerCell + 1) {
-            return 3;
-        } else if (neighborCell == centerCell + width + 1) {
-            return 4;
-        } else if (neighborCell == centerCell + width) {
-            return 5;
-        } else if (neighborCell == centerCell + width - 1) {
-            return 6;
-        } else if (neighborCell == centerCell - 1) {
-            return 7;
-        }
-        return -1;
+        return routingCosts.getNeighborNum(centerCell, neighborCell);
     }
 
     // Get array of all source and sink node cell locations
@@ -320,20 +390,31 @@ public class DataStorer {
     }
 
     public double getModifiedEdgeRoutingCost(int cell1, int cell2) {
-        if (cell1 == cell2) {
-            return 0;
-        } else if (getNeighborNum(cell1, cell2) >= 0 && getNeighborNum(cell1, cell2) < 8) {
-            return modifiedRoutingCosts[cell1][getNeighborNum(cell1, cell2)];
-        }
-        return Double.MAX_VALUE;
+        return modifiedRoutingCosts.getEdgeCost(cell1, cell2);
     }
 
     public void updateModifiedEdgeRoutingCost(int cell1, int cell2, double edgeCostModification) {
-        if (cell1 == cell2) {
+        int neighborNum = getNeighborNum(cell1, cell2);
+        if (cell1 != cell2 && neighborNum >= 0) {
+            modifiedRoutingCosts.setCost(cell1, neighborNum, edgeCostModification * routingCosts.getCost(cell1, neighborNum));
+        }
+    }
 
-        } else if (getNeighborNum(cell1, cell2) >= 0 && getNeighborNum(cell1, cell2) < 8) {
-            modifiedRoutingCosts[cell1][getNeighborNum(cell1, cell2)] = edgeCostModification * routingCosts[cell1][getNeighborNum(cell1, cell2)];
+    public CostSurface getRoutingCosts() {
+        return routingCosts;
+    }
+
+    // Synchronized so parallel path searches build or load the hierarchy only once
+    public synchronized ContractionHierarchy getRoutingHierarchy() {
+        if (routingHierarchy == null) {
+            loadNetworkCosts();
+            routingHierarchy = DataInOut.loadRoutingHierarchy();
         }
+        return routingHierarchy;
+    }
+
+    public CostSurface getModifiedRoutingCosts() {
+        return modifiedRoutingCosts;
     }
 
     public int sourceNum(int vertex) {
@@ -410,6 +491,38 @@ public class DataStorer {
         return height;
     }
 
+    public HashMap<String, String> getSettings() {
+        return settings;
+    }
+
+    public boolean getMapCosts() {
+        return mapCosts;
+    }
+
+    public int getTileCacheSize() {
+        return tileCacheSize;
+    }
+
+    public String getCostPrecision() {
+        return costPrecision;
+    }
+
+    public boolean getUseRasterCosts() {
+        return useRasterCosts;
+    }
+
+    public double getLowerLeftX() {
+        return lowerLeftX;
+    }
+
+    public double getLowerLeftY() {
+        return lowerLeftY;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
     public Source[] getSources() {
         return sources;
     }
@@ -482,6 +595,30 @@ public class DataStorer {
         this.height = height;
     }
 
+    public void setSettings(HashMap<String, String> settings) {
+        this.settings = settings;
+    }
+
+    // Set before costs are loaded. Lossy modes report their worst case error when loading.
+    public void setMapCosts(boolean mapCosts) {
+        this.mapCosts = mapCosts;
+    }
+
+    public void setTileCacheSize(int tileCacheSize) {
+        this.tileCacheSize = tileCacheSize;
+    }
+
+    public void setCostPrecision(String costPrecision) {
+        if (!costPrecision.equals("double") && !costPrecision.equals("float") && !costPrecision.equals("quantized")) {
+            throw new IllegalArgumentException("Cost precision must be double, float, or quantized, not " + costPrecision);
+        }
+        this.costPrecision = costPrecision;
+    }
+
+    public void setUseRasterCosts(boolean useRasterCosts) {
+        this.useRasterCosts = useRasterCosts;
+    }
+
     public void setLowerLeftX(double lowerLeftX) {
         this.lowerLeftX = lowerLeftX;
     }
@@ -494,24 +631,24 @@ public class DataStorer {
         this.cellSize = cellSize;
     }
 
-    public void setRightOfWayCosts(double[][] rightOfWayCosts) {
+    public void setRightOfWayCosts(CostSurface rightOfWayCosts) {
         this.rightOfWayCosts = rightOfWayCosts;
     }
 
-    public void setConstructionCosts(double[][] constructionCosts) {
+    public void setConstructionCosts(CostSurface constructionCosts) {
         this.constructionCosts = constructionCosts;
     }
     
-    public void setRoutingCosts(double[][] routingCosts) {
+    public void setRoutingCosts(CostSurface routingCosts) {
         this.routingCosts = routingCosts;
         
-        modifiedRoutingCosts = new double[routingCosts.length][];
-        for (int i = 0; i < routingCosts.length; i++) {
-            double[] temp = routingCosts[i];
-            int tempLength = temp.length;
-            modifiedRoutingCosts[i] = new double[tempLength];
-            System.arraycopy(temp, 0, modifiedRoutingCosts[i], 0, tempLength);
+        // Costs already on the heap are copied whole. Other storage keeps only the changes.
+        if (routingCosts instanceof ArrayCostSurface) {
+            modifiedRoutingCosts = new ArrayCostSurface((ArrayCostSurface) routingCosts);
+        } else {
+            modifiedRoutingCosts = new ModifiedCostSurface(routingCosts);
         }
+        routingHierarchy = null;
     }
 
     public void setSources(Source[] sources) {
@@ -528,6 +665,7 @@ public class DataStorer {
 
     public void setShortestPaths(int[][] shortestPaths) {
         this.shortestPaths = shortestPaths;
+        indexShortestPaths();
     }
 
     public void setShortestPathCosts(double[] shortestPathCosts) {
@@ -0,0 +1,82 @@
+package dataStore;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing table of edge costs keyed by cellNum * 8 + neighborNum, for
+ * surfaces that keep costs set on them apart from the costs they are made
+ * with. Keys and costs are primitive arrays, so a lookup does not allocate.
+ *
+ * @author yaw
+ */
+class EdgeCostTable {
+
+    private static final long EMPTY = -1;
+
+    private long[] keys;    // cellNum * 8 + neighborNum of each cost, EMPTY for unused slots
+    private double[] costs;     // [slot] = cost
+    private int size;
+
+    EdgeCostTable() {
+        keys = new long[1024];
+        costs = new double[1024];
+        Arrays.fill(keys, EMPTY);
+    }
+
+    // Slot of the cost of an edge, -1 if it has none
+    int find(int cellNum, int neighborNum) {
+        long key = cellNum * 8L + neighborNum;
+        for (int slot = getSlot(key); keys[slot] != EMPTY; slot = (slot + 1) & (keys.length - 1)) {
+            if (keys[slot] == key) {
+                return slot;
+            }
+        }
+        return -1;
+    }
+
+    double getCost(int slot) {
+        return costs[slot];
+    }
+
+    void put(int cellNum, int neighborNum, double cost) {
+        if (2 * (size + 1) > keys.length) {
+            grow();
+        }
+        long key = cellNum * 8L + neighborNum;
+        int slot = getSlot(key);
+        while (keys[slot] != EMPTY && keys[slot] != key) {
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        if (keys[slot] == EMPTY) {
+            keys[slot] = key;
+            size++;
+        }
+        costs[slot] = cost;
+    }
+
+    int size() {
+        return size;
+    }
+
+    private int getSlot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (keys.length - 1);
+    }
+
+    private void grow() {
+        long[] oldKeys = keys;
+        double[] oldCosts = costs;
+        keys = new long[2 * oldKeys.length];
+        costs = new double[2 * oldKeys.length];
+        Arrays.fill(keys, EMPTY);
+        for (int oldSlot = 0; oldSlot < oldKeys.length; oldSlot++) {
+            if (oldKeys[oldSlot] != EMPTY) {
+                int slot = getSlot(oldKeys[oldSlot]);
+                while (keys[slot] != EMPTY) {
+                    slot = (slot + 1) & (keys.length - 1);
+                }
+                keys[slot] = oldKeys[oldSlot];
+                costs[slot] = oldCosts[oldSlot];
+            }
+        }
+    }
+}
@@ -0,0 +1,69 @@
+package dataStore;
+
+import java.util.Arrays;
+
+/**
+ * Cost surface held on the heap as floats, half the memory of doubles.
+ * Costs too large for a float are stored as infinity and read back as
+ * Double.MAX_VALUE, which marks cells that cannot be crossed.
+ *
+ * @author yaw
+ */
+public class FloatCostSurface extends CostSurface {
+
+    private float[] costs;  // [cellNum * 8 + neighborNum]
+    private double maxError;    // Largest absolute difference between a stored cost and the cost given
+    private double maxRelativeError;
+
+    public FloatCostSurface(int width, int height) {
+        super(width, height);
+        costs = new float[(width * height + 1) * 8];
+        Arrays.fill(costs, Float.POSITIVE_INFINITY);
+    }
+
+    // Copy of surface at float precision
+    public FloatCostSurface(CostSurface surface) {
+        this(surface.getWidth(), surface.getHeight());
+        for (int cellNum = 0; cellNum <= getNumCells(); cellNum++) {
+            for (int neighborNum = 0; neighborNum < 8; neighborNum++) {
+                setCost(cellNum, neighborNum, surface.getCost(cellNum, neighborNum));
+            }
+        }
+        maxError += surface.getMaxError();
+        maxRelativeError += surface.getMaxRelativeError();
+    }
+
+    @Override
+    public double getCost(int cellNum, int neighborNum) {
+        float cost = costs[cellNum * 8 + neighborNum];
+        if (cost == Float.POSITIVE_INFINITY) {
+            return Double.MAX_VALUE;
+        }
+        return cost;
+    }
+
+    @Override
+    public void setCost(int cellNum, int neighborNum, double cost) {
+        if (cost >= Float.MAX_VALUE) {
+            costs[cellNum * 8 + neighborNum] = Float.POSITIVE_INFINITY;
+        } else {
+            float storedCost = (float) cost;
+            costs[cellNum * 8 + neighborNum] = storedCost;
+            double error = Math.abs(storedCost - cost);
+            maxError = Math.max(maxError, error);
+            if (cost != 0) {
+                maxRelativeError = Math.max(maxRelativeError, error / Math.abs(cost));
+            }
+        }
+    }
+
+    @Override
+    public double getMaxError() {
+        return maxError;
+    }
+
+    @Override
+    public double getMaxRelativeError() {
+        return maxRelativeError;
+    }
+}
@@ -0,0 +1,221 @@
+package dataStore;
+
+import java.util.Arrays;
+import java.util.HashMap;
+
+/**
+ * Candidate graph for the heuristic in compressed sparse row form.
+ * Each undirected edge is stored as two arcs. Flow state is kept per arc and
+ * pipeline cost tiers are kept once per undirected edge.
+ *
+ * @author yaw
+ */
+public class HeuristicGraph {
+
+    // Vertices
+    private int[] vertexCells;  // [vertexNum] = cellNum
+    private HashMap<Integer, Integer> cellNumToVertexNum;
+
+    // Arcs
+    private int[] firstArc;     // [vertexNum] = first arc leaving vertexNum, [numVertices] = numArcs
+    private int[] arcTail;
+    private int[] arcHead;
+    private int[] arcReverse;   // [arcNum] = arc in opposite direction
+    private int[] arcEdge;      // [arcNum] = undirected edge of arc
+
+    // Arc state
+    private double[] hostingAmounts;
+    private int[] sizes;    //size 0 means no pipeline
+
+    // Cost tiers
+    private int numSizes;       // Includes size 0
+    private double[] capacities;        // [size] = capacity at each size, shared by all edges
+    private double[] buildCosts;        // [edgeNum * numSizes + size]
+    private double[] transportCosts;    // [edgeNum * numSizes + size], per ton of CO2
+
+    public HeuristicGraph(DataStorer data) {
+        vertexCells = data.getGraphVertices();
+        cellNumToVertexNum = new HashMap<>();
+        for (int u = 0; u < vertexCells.length; u++) {
+            cellNumToVertexNum.put(vertexCells[u], u);
+        }
+
+        // Count arcs leaving each vertex
+        Edge[] edges = data.getGraphEdgeCosts().keySet().toArray(new Edge[0]);
+        int[] degrees = new int[vertexCells.length];
+        for (Edge e : edges) {
+            if (e.v1 != e.v2) {
+                degrees[cellNumToVertexNum.get(e.v1)]++;
+                degrees[cellNumToVertexNum.get(e.v2)]++;
+            }
+        }
+        firstArc = new int[vertexCells.length + 1];
+        for (int u = 0; u < vertexCells.length; u++) {
+            firstArc[u + 1] = firstArc[u] + degrees[u];
+        }
+        int numArcs = firstArc[vertexCells.length];
+
+        // Place arc heads, sorted within each vertex
+        arcTail = new int[numArcs];
+        arcHead = new int[numArcs];
+        int[] nextArc = Arrays.copyOf(firstArc, vertexCells.length);
+        for (Edge e : edges) {
+            if (e.v1 != e.v2) {
+                int u = cellNumToVertexNum.get(e.v1);
+                int v = cellNumToVertexNum.get(e.v2);
+                arcHead[nextArc[u]++] = v;
+                arcHead[nextArc[v]++] = u;
+            }
+        }
+        for (int u = 0; u < vertexCells.length; u++) {
+            Arrays.sort(arcHead, firstArc[u], firstArc[u + 1]);
+            for (int arc = firstArc[u]; arc < firstArc[u + 1]; arc++) {
+                arcTail[arc] = u;
+            }
+        }
+
+        // Pair arcs and number undirected edges
+        arcReverse = new int[numArcs];
+        arcEdge = new int[numArcs];
+        int numEdges = 0;
+        for (int arc = 0; arc < numArcs; arc++) {
+            int u = arcTail[arc];
+            int v = arcHead[arc];
+            if (u < v) {
+                int reverse = Arrays.binarySearch(arcHead, firstArc[v], firstArc[v + 1], u);
+                arcReverse[arc] = reverse;
+                arcReverse[reverse] = arc;
+                arcEdge[arc] = numEdges;
+                arcEdge[reverse] = numEdges;
+                numEdges++;
+            }
+        }
+
+        hostingAmounts = new double[numArcs];
+        sizes = new int[numArcs];
+
+        LinearComponent[] linearComponents = data.getLinearComponents();
+        numSizes = linearComponents.length + 1;   //Need 0 to represent no pipeline
+
+        // Populate capacities
+        capacities = new double[numSizes];
+        // Get max pipeline capacity.
+        for (int c = 0; c < linearComponents.length; c++) {
+            double maxCap = Double.MAX_VALUE;
+            if (c < linearComponents.length - 1) {
+                double alpha1 = linearComponents[c].getConSlope() + linearComponents[c].getRowSlope();
+                double beta1 = linearComponents[c].getConIntercept() + linearComponents[c].getRowIntercept();
+                double alpha2 = linearComponents[c + 1].getConSlope() + linearComponents[c + 1].getRowSlope();
+                double beta2 = linearComponents[c + 1].getConIntercept() + linearComponents[c + 1].getRowIntercept();
+                maxCap = (beta2 - beta1) / (alpha1 - alpha2);
+            }
+            capacities[c + 1] = maxCap;
+        }
+
+        //Construction and right-of-way costs
+        HashMap<Edge, Double> edgeConstructionCosts = data.getGraphEdgeConstructionCosts();
+        HashMap<Edge, Double> edgeRightOfWayCosts = data.getGraphEdgeRightOfWayCosts();
+
+        // Populate build and transport costs
+        buildCosts = new double[numEdges * numSizes];
+        transportCosts = new double[numEdges * numSizes];
+        for (int arc = 0; arc < numArcs; arc++) {
+            if (arcTail[arc] < arcHead[arc]) {
+                Edge e = new Edge(vertexCells[arcTail[arc]], vertexCells[arcHead[arc]]);
+                double constructionCost = edgeConstructionCosts.get(e);
+                double rightOfWayCost = edgeRightOfWayCosts.get(e);
+                int offset = arcEdge[arc] * numSizes;
+                for (int c = 0; c < linearComponents.length; c++) {
+                    buildCosts[offset + c + 1] = (linearComponents[c].getConIntercept() * constructionCost + linearComponents[c].getRowIntercept() * rightOfWayCost) * data.getCrf();
+                    transportCosts[offset + c + 1] = (linearComponents[c].getConSlope() * constructionCost + linearComponents[c].getRowSlope() * rightOfWayCost) * data.getCrf() / .93;    //.93 = pipeline utilization
+                }
+            }
+        }
+    }
+
+    // Smallest pipeline size that can carry volume
+    public int getPipelineSize(double volume) {
+        int size = 0;
+        while (volume > capacities[size]) {
+            size++;
+        }
+        return size;
+    }
+
+    public int getNumVertices() {
+        return vertexCells.length;
+    }
+
+    public int getNumArcs() {
+        return arcHead.length;
+    }
+
+    public int getNumEdges() {
+        return arcHead.length / 2;
+    }
+
+    public int getVertexNum(int cellNum) {
+        return cellNumToVertexNum.get(cellNum);
+    }
+
+    public int getVertexCell(int vertexNum) {
+        return vertexCells[vertexNum];
+    }
+
+    public int getFirstArc(int vertexNum) {
+        return firstArc[vertexNum];
+    }
+
+    public int getLastArc(int vertexNum) {
+        return firstArc[vertexNum + 1];
+    }
+
+    public int getTail(int arc) {
+        return arcTail[arc];
+    }
+
+    public int getHead(int arc) {
+        return arcHead[arc];
+    }
+
+    public int getReverse(int arc) {
+        return arcReverse[arc];
+    }
+
+    public int getEdgeNum(int arc) {
+        return arcEdge[arc];
+    }
+
+    public double getHostingAmount(int arc) {
+        return hostingAmounts[arc];
+    }
+
+    public int getSize(int arc) {
+        return sizes[arc];
+    }
+
+    public double getBuildCost(int arc, int size) {
+        return buildCosts[arcEdge[arc] * numSizes + size];
+    }
+
+    public double getTransportCost(int arc, int size) {
+        return transportCosts[arcEdge[arc] * numSizes + size];
+    }
+
+    // Lowest transport cost per ton of CO2 over all pipeline sizes
+    public double getMinTransportCost(int arc) {
+        double minCost = Double.MAX_VALUE;
+        for (int size = 1; size < numSizes; size++) {
+            minCost = Math.min(minCost, getTransportCost(arc, size));
+        }
+        return minCost;
+    }
+
+    public void setHostingAmount(int arc, double hostingAmount) {
+        hostingAmounts[arc] = hostingAmount;
+    }
+
+    public void setSize(int arc, int size) {
+        sizes[arc] = size;
+    }
+}
@@ -0,0 +1,165 @@
+package dataStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Cost surface read from a binary cost network file through memory mapping,
+ * so it does not need to be on the heap.
+ * File layout, little endian: a HEADER_SIZE byte header holding MAGIC,
+ * VERSION, width, height, lowerLeftX, lowerLeftY and cellSize, then 8 doubles
+ * per cell in neighbor order for cells 0 through width * height.
+ * MAGIC is written last, so a file left half written is never opened.
+ *
+ * @author yaw
+ */
+public class MappedCostSurface extends CostSurface {
+
+    public static final int MAGIC = 0x434E4554;     // "CNET"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    private static final int CHUNK_BITS = 27;   // Doubles per mapping, 1 GB, under the 2 GB map limit
+    private static final int CHUNK_MASK = (1 << CHUNK_BITS) - 1;
+
+    private File file;
+    private double lowerLeftX;
+    private double lowerLeftY;
+    private double cellSize;
+    private MappedByteBuffer[] mappings;
+    private DoubleBuffer[] chunks;      // [index >> CHUNK_BITS] = doubles of mappings
+    private boolean writable;
+
+    private MappedCostSurface(File file, int width, int height, double lowerLeftX, double lowerLeftY, double cellSize) {
+        super(width, height);
+        this.file = file;
+        this.lowerLeftX = lowerLeftX;
+        this.lowerLeftY = lowerLeftY;
+        this.cellSize = cellSize;
+    }
+
+    // Map an existing cost network file for reading
+    public static MappedCostSurface open(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            header.flip();
+            if (header.limit() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException(file.getName() + " is not a complete cost network file.");
+            }
+            if (header.getInt() != VERSION) {
+                throw new IOException(file.getName() + " has an unsupported cost network version.");
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            MappedCostSurface surface = new MappedCostSurface(file, width, height, header.getDouble(), header.getDouble(), header.getDouble());
+            if (channel.size() != surface.getFileSize()) {
+                throw new IOException(file.getName() + " does not match the size in its header.");
+            }
+            surface.map(channel, FileChannel.MapMode.READ_ONLY);
+            return surface;
+        }
+    }
+
+    // Make a new cost network file with every cost set to Double.MAX_VALUE. Call finish once the costs are written.
+    public static MappedCostSurface create(File file, int width, int height, double lowerLeftX, double lowerLeftY, double cellSize) throws IOException {
+        MappedCostSurface surface = new MappedCostSurface(file, width, height, lowerLeftX, lowerLeftY, cellSize);
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            raf.setLength(surface.getFileSize());
+            FileChannel channel = raf.getChannel();
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(0);   // MAGIC is written by finish
+            header.putInt(VERSION);
+            header.putInt(width);
+            header.putInt(height);
+            header.putDouble(lowerLeftX);
+            header.putDouble(lowerLeftY);
+            header.putDouble(cellSize);
+            header.rewind();
+            channel.write(header, 0);
+            surface.map(channel, FileChannel.MapMode.READ_WRITE);
+        }
+        surface.writable = true;
+        for (DoubleBuffer chunk : surface.chunks) {
+            for (int i = 0; i < chunk.capacity(); i++) {
+                chunk.put(i, Double.MAX_VALUE);
+            }
+        }
+        return surface;
+    }
+
+    // Flush costs to disk and mark the file complete
+    public void finish() throws IOException {
+        for (MappedByteBuffer mapping : mappings) {
+            mapping.force();
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            magic.putInt(MAGIC);
+            magic.rewind();
+            raf.getChannel().write(magic, 0);
+            raf.getChannel().force(true);
+        }
+        writable = false;
+    }
+
+    private long getNumEntries() {
+        return ((long) getNumCells() + 1) * 8;
+    }
+
+    private long getFileSize() {
+        return HEADER_SIZE + getNumEntries() * 8;
+    }
+
+    private void map(FileChannel channel, FileChannel.MapMode mode) throws IOException {
+        long numEntries = getNumEntries();
+        int numChunks = (int) ((numEntries + CHUNK_MASK) >> CHUNK_BITS);
+        mappings = new MappedByteBuffer[numChunks];
+        chunks = new DoubleBuffer[numChunks];
+        for (int chunk = 0; chunk < numChunks; chunk++) {
+            long firstEntry = (long) chunk << CHUNK_BITS;
+            long chunkEntries = Math.min(1L << CHUNK_BITS, numEntries - firstEntry);
+            mappings[chunk] = channel.map(mode, HEADER_SIZE + firstEntry * 8, chunkEntries * 8);
+            mappings[chunk].order(ByteOrder.LITTLE_ENDIAN);
+            chunks[chunk] = mappings[chunk].asDoubleBuffer();
+        }
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public double getLowerLeftX() {
+        return lowerLeftX;
+    }
+
+    public double getLowerLeftY() {
+        return lowerLeftY;
+    }
+
+    public double getCellSize() {
+        return cellSize;
+    }
+
+    @Override
+    public double getCost(int cellNum, int neighborNum) {
+        long index = cellNum * 8L + neighborNum;
+        return chunks[(int) (index >>> CHUNK_BITS)].get((int) index & CHUNK_MASK);
+    }
+
+    @Override
+    public void setCost(int cellNum, int neighborNum, double cost) {
+        if (!writable) {
+            throw new UnsupportedOperationException("Cost network file " + file.getName() + " is read only.");
+        }
+        long index = cellNum * 8L + neighborNum;
+        chunks[(int) (index >>> CHUNK_BITS)].put((int) index & CHUNK_MASK, cost);
+    }
+}
@@ -0,0 +1,38 @@
+package dataStore;
+
+/**
+ * Cost surface that records changes over a base surface it never writes to.
+ * Used for modified routing costs, where only edges on generated paths change,
+ * so the base can stay memory mapped. Changes are kept in an EdgeCostTable,
+ * read on every search step.
+ *
+ * @author yaw
+ */
+public class ModifiedCostSurface extends CostSurface {
+
+    private CostSurface base;
+    private EdgeCostTable modifiedCosts = new EdgeCostTable();
+
+    public ModifiedCostSurface(CostSurface base) {
+        super(base.getWidth(), base.getHeight());
+        this.base = base;
+    }
+
+    @Override
+    public double getCost(int cellNum, int neighborNum) {
+        int slot = modifiedCosts.find(cellNum, neighborNum);
+        if (slot >= 0) {
+            return modifiedCosts.getCost(slot);
+        }
+        return base.getCost(cellNum, neighborNum);
+    }
+
+    @Override
+    public void setCost(int cellNum, int neighborNum, double cost) {
+        modifiedCosts.put(cellNum, neighborNum, cost);
+    }
+
+    public int getNumModified() {
+        return modifiedCosts.size();
+    }
+}
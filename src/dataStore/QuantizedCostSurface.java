@@ -0,0 +1,91 @@
+package dataStore;
+
+/**
+ * Cost surface held on the heap as 16 bit codes, a quarter of the memory of
+ * doubles. Codes are spread evenly between the smallest and largest costs of
+ * the surface it is made from. The top code marks cells that cannot be
+ * crossed and reads back as Double.MAX_VALUE.
+ *
+ * @author yaw
+ */
+public class QuantizedCostSurface extends CostSurface {
+
+    static final char NO_EDGE = Character.MAX_VALUE;
+
+    private char[] codes;   // [cellNum * 8 + neighborNum]
+    private double minCost;
+    private double step;    // Cost between neighboring codes
+    private double maxError;    // Largest absolute difference between a stored cost and the cost given
+    private double maxRelativeError;
+
+    // Quantize surface, scaled to its range of costs
+    public QuantizedCostSurface(CostSurface surface) {
+        super(surface.getWidth(), surface.getHeight());
+
+        // Find range of costs that can be crossed
+        minCost = Double.MAX_VALUE;
+        double maxCost = -Double.MAX_VALUE;
+        for (int cellNum = 0; cellNum <= getNumCells(); cellNum++) {
+            for (int neighborNum = 0; neighborNum < 8; neighborNum++) {
+                double cost = surface.getCost(cellNum, neighborNum);
+                if (cost < Double.MAX_VALUE) {
+                    minCost = Math.min(minCost, cost);
+                    maxCost = Math.max(maxCost, cost);
+                }
+            }
+        }
+        if (minCost > maxCost) {
+            minCost = 0;
+            maxCost = 0;
+        }
+        step = (maxCost - minCost) / (NO_EDGE - 1);
+
+        codes = new char[(getNumCells() + 1) * 8];
+        for (int cellNum = 0; cellNum <= getNumCells(); cellNum++) {
+            for (int neighborNum = 0; neighborNum < 8; neighborNum++) {
+                setCost(cellNum, neighborNum, surface.getCost(cellNum, neighborNum));
+            }
+        }
+        maxError += surface.getMaxError();
+        maxRelativeError += surface.getMaxRelativeError();
+    }
+
+    @Override
+    public double getCost(int cellNum, int neighborNum) {
+        char code = codes[cellNum * 8 + neighborNum];
+        if (code == NO_EDGE) {
+            return Double.MAX_VALUE;
+        }
+        return minCost + code * step;
+    }
+
+    // Costs outside the range the surface was made with are clamped to it
+    @Override
+    public void setCost(int cellNum, int neighborNum, double cost) {
+        if (cost >= Double.MAX_VALUE) {
+            codes[cellNum * 8 + neighborNum] = NO_EDGE;
+        } else {
+            long code = 0;
+            if (step > 0) {
+                code = Math.round((cost - minCost) / step);
+                code = Math.max(0, Math.min(code, NO_EDGE - 1));
+            }
+            codes[cellNum * 8 + neighborNum] = (char) code;
+            double error = Math.abs(minCost + code * step - cost);
+            maxError = Math.max(maxError, error);
+            if (cost != 0) {
+                maxRelativeError = Math.max(maxRelativeError, error / Math.abs(cost));
+            }
+        }
+    }
+
+    @Override
+    public double getMaxError() {
+        return maxError;
+    }
+
+    @Override
+    public double getMaxRelativeError() {
+        return maxRelativeError;
+    }
+}
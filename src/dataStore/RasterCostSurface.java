@@ -0,0 +1,96 @@
+package dataStore;
+
+import java.util.Arrays;
+
+/**
+ * Cost surface that keeps one value per cell and derives the cost of moving
+ * to a neighbor when it is asked for: the average of the two cell values,
+ * times the square root of 2 for diagonal neighbors. Uses an eighth of the
+ * memory of storing every edge. Cells without a value cannot be crossed.
+ * Costs set on the surface are kept over the derived costs.
+ *
+ * @author yaw
+ */
+public class RasterCostSurface extends CostSurface {
+
+    private static final double DIAGONAL_FACTOR = Math.sqrt(2);
+
+    private float[] values;     // [cellNum] = cost of crossing cell, NaN if it cannot be crossed
+    private double maxValueError;   // Largest absolute difference between a stored value and the value given
+    private double maxRelativeError;
+    private EdgeCostTable setCosts;     // Costs set over the derived costs, null until one is set
+
+    public RasterCostSurface(int width, int height) {
+        super(width, height);
+        values = new float[width * height + 1];
+        Arrays.fill(values, Float.NaN);
+    }
+
+    // Raster whose values are the sums of the values of two rasters
+    public RasterCostSurface(RasterCostSurface raster1, RasterCostSurface raster2) {
+        this(raster1.getWidth(), raster1.getHeight());
+        for (int cellNum = 1; cellNum <= getNumCells(); cellNum++) {
+            setValue(cellNum, (double) raster1.values[cellNum] + raster2.values[cellNum]);
+        }
+        maxValueError += raster1.maxValueError + raster2.maxValueError;
+        maxRelativeError += raster1.maxRelativeError + raster2.maxRelativeError;
+    }
+
+    public double getValue(int cellNum) {
+        return values[cellNum];
+    }
+
+    // NaN marks a cell that cannot be crossed
+    public void setValue(int cellNum, double value) {
+        float storedValue = (float) value;
+        values[cellNum] = storedValue;
+        if (!Double.isNaN(value)) {
+            double error = Math.abs(storedValue - value);
+            maxValueError = Math.max(maxValueError, error);
+            if (value != 0) {
+                maxRelativeError = Math.max(maxRelativeError, error / Math.abs(value));
+            }
+        }
+    }
+
+    @Override
+    public double getCost(int cellNum, int neighborNum) {
+        if (setCosts != null) {
+            int slot = setCosts.find(cellNum, neighborNum);
+            if (slot >= 0) {
+                return setCosts.getCost(slot);
+            }
+        }
+        if ((getNeighborMask(cellNum) & (1 << neighborNum)) == 0) {
+            return Double.MAX_VALUE;
+        }
+        float value = values[cellNum];
+        float neighborValue = values[cellNum + getNeighborOffset(neighborNum)];
+        if (Float.isNaN(value) || Float.isNaN(neighborValue)) {
+            return Double.MAX_VALUE;
+        }
+        double cost = ((double) value + neighborValue) / 2;
+        if (neighborNum % 2 == 0) {
+            cost *= DIAGONAL_FACTOR;
+        }
+        return cost;
+    }
+
+    @Override
+    public void setCost(int cellNum, int neighborNum, double cost) {
+        if (setCosts == null) {
+            setCosts = new EdgeCostTable();
+        }
+        setCosts.put(cellNum, neighborNum, cost);
+    }
+
+    @Override
+    public double getMaxError() {
+        return maxValueError * DIAGONAL_FACTOR;
+    }
+
+    @Override
+    public double getMaxRelativeError() {
+        return maxRelativeError;
+    }
+}
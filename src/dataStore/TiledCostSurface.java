@@ -0,0 +1,337 @@
+package dataStore;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * Cost surface read from a tile file through a cache of the most recently used
+ * tiles. A tile file keeps the costs of each square tile of cells together, so
+ * a cache miss is one contiguous read, and a search growing outward from a cell
+ * stays within a few tiles. Only the cache is held on the heap.
+ * Costs are stored at the precision the file was written with: doubles, floats,
+ * or 16 bit codes spread evenly between the smallest and largest costs.
+ * File layout, little endian: a HEADER_SIZE byte header holding MAGIC, VERSION,
+ * width, height, tileSize, precision code, minCost, step, maxError and
+ * maxRelativeError, then the tiles in row order, each holding 8 costs per cell
+ * for its cells in row order. Cells past the right and bottom edges have no
+ * edges. The header is written last, so a file left half written is never
+ * opened.
+ *
+ * @author yaw
+ */
+public class TiledCostSurface extends CostSurface {
+
+    public static final int MAGIC = 0x43544C53;     // "CTLS"
+    public static final int VERSION = 1;
+    public static final int HEADER_SIZE = 64;
+    public static final int DEFAULT_TILE_SIZE = 64;
+    private static final String[] PRECISIONS = {"double", "float", "quantized"};    // [precision code]
+    private static final int[] COST_SIZES = {8, 4, 2};  // [precision code] = bytes per cost
+
+    private File file;
+    private int tileSize;
+    private int tilesPerRow;
+    private int precisionCode;
+    private double minCost;     // Quantized costs are minCost + code * step
+    private double step;
+    private double maxError;    // Largest absolute difference between a stored cost and the cost given
+    private double maxRelativeError;
+    private LinkedHashMap<Integer, Tile> cache;     // Least recently used first
+    private volatile Tile lastTile;     // Tile of the last lookup, checked before the cache
+    private EdgeCostTable setCosts;     // Costs set over the costs of the file, null until one is set
+
+    // Cache use
+    private long numHits;
+    private long numMisses;
+
+    private TiledCostSurface(File file, int width, int height, int tileSize, int precisionCode, int cacheSize) {
+        super(width, height);
+        this.file = file;
+        this.tileSize = tileSize;
+        this.precisionCode = precisionCode;
+        tilesPerRow = (width + tileSize - 1) / tileSize;
+        cache = new LinkedHashMap<Integer, Tile>(16, .75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<Integer, Tile> eldest) {
+                return size() > Math.max(cacheSize, 1);
+            }
+        };
+    }
+
+    // Open a tile file, holding at most cacheSize tiles in memory
+    public static TiledCostSurface open(File file, int cacheSize) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            channel.read(header, 0);
+            header.flip();
+            if (header.limit() < HEADER_SIZE || header.getInt() != MAGIC) {
+                throw new IOException(file.getName() + " is not a complete cost tile file.");
+            }
+            if (header.getInt() != VERSION) {
+                throw new IOException(file.getName() + " has an unsupported cost tile version.");
+            }
+            int width = header.getInt();
+            int height = header.getInt();
+            int tileSize = header.getInt();
+            int precisionCode = header.getInt();
+            if (tileSize < 1 || precisionCode < 0 || precisionCode >= PRECISIONS.length) {
+                throw new IOException(file.getName() + " has an invalid cost tile header.");
+            }
+            TiledCostSurface surface = new TiledCostSurface(file, width, height, tileSize, precisionCode, cacheSize);
+            surface.minCost = header.getDouble();
+            surface.step = header.getDouble();
+            surface.maxError = header.getDouble();
+            surface.maxRelativeError = header.getDouble();
+            if (channel.size() != surface.getFileSize()) {
+                throw new IOException(file.getName() + " does not match the size in its header.");
+            }
+            return surface;
+        }
+    }
+
+    // Write the costs of source to a tile file at precision "double", "float", or "quantized"
+    public static void write(File file, CostSurface source, int tileSize, String precision) throws IOException {
+        int precisionCode = Arrays.asList(PRECISIONS).indexOf(precision);
+        if (precisionCode < 0) {
+            throw new IllegalArgumentException("Unknown cost precision " + precision);
+        }
+        TiledCostSurface surface = new TiledCostSurface(file, source.getWidth(), source.getHeight(), tileSize, precisionCode, 0);
+
+        // Spread quantized codes over the range of costs that can be crossed
+        if (precision.equals("quantized")) {
+            double minCost = Double.MAX_VALUE;
+            double maxCost = -Double.MAX_VALUE;
+            for (int cellNum = 1; cellNum <= source.getNumCells(); cellNum++) {
+                for (int neighborNum = 0; neighborNum < 8; neighborNum++) {
+                    double cost = source.getCost(cellNum, neighborNum);
+                    if (cost < Double.MAX_VALUE) {
+                        minCost = Math.min(minCost, cost);
+                        maxCost = Math.max(maxCost, cost);
+                    }
+                }
+            }
+            if (minCost > maxCost) {
+                minCost = 0;
+                maxCost = 0;
+            }
+            surface.minCost = minCost;
+            surface.step = (maxCost - minCost) / (QuantizedCostSurface.NO_EDGE - 1);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.CREATE, StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            ByteBuffer tile = ByteBuffer.allocate(surface.getTileBytes()).order(ByteOrder.LITTLE_ENDIAN);
+            for (int tileNum = 0; tileNum < surface.getNumTiles(); tileNum++) {
+                int x1 = tileNum % surface.tilesPerRow * tileSize;
+                int y1 = tileNum / surface.tilesPerRow * tileSize;
+                tile.clear();
+                for (int y = y1; y < y1 + tileSize; y++) {
+                    for (int x = x1; x < x1 + tileSize; x++) {
+                        for (int neighborNum = 0; neighborNum < 8; neighborNum++) {
+                            if (x < surface.getWidth() && y < surface.getHeight()) {
+                                surface.putCost(tile, source.getCost(y * surface.getWidth() + x + 1, neighborNum));
+                            } else {
+                                surface.putCost(tile, Double.MAX_VALUE);
+                            }
+                        }
+                    }
+                }
+                tile.flip();
+                writeFully(channel, tile, HEADER_SIZE + (long) tileNum * surface.getTileBytes());
+            }
+            surface.maxError += source.getMaxError();
+            surface.maxRelativeError += source.getMaxRelativeError();
+            channel.force(true);
+
+            ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            header.putInt(MAGIC);
+            header.putInt(VERSION);
+            header.putInt(surface.getWidth());
+            header.putInt(surface.getHeight());
+            header.putInt(tileSize);
+            header.putInt(precisionCode);
+            header.putDouble(surface.minCost);
+            header.putDouble(surface.step);
+            header.putDouble(surface.maxError);
+            header.putDouble(surface.maxRelativeError);
+            header.rewind();
+            writeFully(channel, header, 0);
+            channel.force(true);
+        }
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    private int getNumTiles() {
+        return tilesPerRow * ((getHeight() + tileSize - 1) / tileSize);
+    }
+
+    private int getTileBytes() {
+        return tileSize * tileSize * 8 * COST_SIZES[precisionCode];
+    }
+
+    private long getFileSize() {
+        return HEADER_SIZE + (long) getNumTiles() * getTileBytes();
+    }
+
+    @Override
+    public double getCost(int cellNum, int neighborNum) {
+        if (setCosts != null) {
+            int slot = setCosts.find(cellNum, neighborNum);
+            if (slot >= 0) {
+                return setCosts.getCost(slot);
+            }
+        }
+        if (cellNum < 1 || cellNum > getNumCells()) {
+            return Double.MAX_VALUE;
+        }
+        int x = (cellNum - 1) % getWidth();
+        int y = (cellNum - 1) / getWidth();
+        int tileNum = y / tileSize * tilesPerRow + x / tileSize;
+        Tile tile = lastTile;
+        if (tile == null || tile.tileNum != tileNum) {
+            tile = getTile(tileNum);
+            lastTile = tile;
+        }
+        int entry = ((y % tileSize) * tileSize + x % tileSize) * 8 + neighborNum;
+        if (precisionCode == 0) {
+            return tile.costs.getDouble(entry * 8);
+        } else if (precisionCode == 1) {
+            float cost = tile.costs.getFloat(entry * 4);
+            return cost == Float.POSITIVE_INFINITY ? Double.MAX_VALUE : cost;
+        }
+        char code = tile.costs.getChar(entry * 2);
+        return code == QuantizedCostSurface.NO_EDGE ? Double.MAX_VALUE : minCost + code * step;
+    }
+
+    // Kept on the heap over the costs of the file, which is never written
+    @Override
+    public void setCost(int cellNum, int neighborNum, double cost) {
+        if (setCosts == null) {
+            setCosts = new EdgeCostTable();
+        }
+        setCosts.put(cellNum, neighborNum, cost);
+    }
+
+    // Append cost to a tile at the precision of the file
+    private void putCost(ByteBuffer tile, double cost) {
+        double storedCost;
+        if (precisionCode == 0) {
+            tile.putDouble(cost);
+            return;
+        } else if (precisionCode == 1) {
+            if (cost >= Float.MAX_VALUE) {
+                tile.putFloat(Float.POSITIVE_INFINITY);
+                return;
+            }
+            tile.putFloat((float) cost);
+            storedCost = (float) cost;
+        } else {
+            if (cost >= Double.MAX_VALUE) {
+                tile.putChar(QuantizedCostSurface.NO_EDGE);
+                return;
+            }
+            long code = 0;
+            if (step > 0) {
+                code = Math.round((cost - minCost) / step);
+                code = Math.max(0, Math.min(code, QuantizedCostSurface.NO_EDGE - 1));
+            }
+            tile.putChar((char) code);
+            storedCost = minCost + code * step;
+        }
+        double error = Math.abs(storedCost - cost);
+        maxError = Math.max(maxError, error);
+        if (cost != 0) {
+            maxRelativeError = Math.max(maxRelativeError, error / Math.abs(cost));
+        }
+    }
+
+    private synchronized Tile getTile(int tileNum) {
+        Tile tile = cache.get(tileNum);
+        if (tile != null) {
+            numHits++;
+            return tile;
+        }
+        numMisses++;
+        tile = readTile(tileNum);
+        cache.put(tileNum, tile);
+        return tile;
+    }
+
+    // Read a tile in one piece. The file is opened for each miss so no handle outlives the read.
+    private Tile readTile(int tileNum) {
+        ByteBuffer costs = ByteBuffer.allocate(getTileBytes()).order(ByteOrder.LITTLE_ENDIAN);
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long position = HEADER_SIZE + (long) tileNum * getTileBytes();
+            while (costs.hasRemaining()) {
+                int numRead = channel.read(costs, position + costs.position());
+                if (numRead < 0) {
+                    throw new IOException(file.getName() + " ends before tile " + tileNum + ".");
+                }
+            }
+        } catch (IOException e) {
+            throw new IllegalStateException("Could not read cost tile " + tileNum + " of " + file.getName() + ": " + e.getMessage());
+        }
+        return new Tile(tileNum, costs);
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    public int getTileSize() {
+        return tileSize;
+    }
+
+    public String getPrecision() {
+        return PRECISIONS[precisionCode];
+    }
+
+    @Override
+    public double getMaxError() {
+        return maxError;
+    }
+
+    @Override
+    public double getMaxRelativeError() {
+        return maxRelativeError;
+    }
+
+    public synchronized long getNumLookups() {
+        return numHits + numMisses;
+    }
+
+    // Share of tile lookups found in the cache. Repeat lookups of the last tile do not reach the cache.
+    public synchronized double getHitRate() {
+        if (numHits + numMisses == 0) {
+            return 1;
+        }
+        return (double) numHits / (numHits + numMisses);
+    }
+
+    public synchronized void resetCacheStats() {
+        numHits = 0;
+        numMisses = 0;
+    }
+
+    private static class Tile {
+
+        private int tileNum;
+        private ByteBuffer costs;   // Costs at the precision of the file, [(row in tile * tileSize + column in tile) * 8 + neighborNum]
+
+        public Tile(int tileNum, ByteBuffer costs) {
+            this.tileNum = tileNum;
+            this.costs = costs;
+        }
+    }
+}
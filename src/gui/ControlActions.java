@@ -142,6 +142,7 @@ public class ControlActions {
             data = new DataStorer(basePath, dataset, scenario);
             solver = new Solver(data);
             data.setSolver(solver);
+            applySettings();
             //dataStorer.loadData();
             solver.setMessenger(messenger);
             gui.displayCostSurface();
@@ -151,6 +152,79 @@ public class ControlActions {
         }
     }
 
+    // Apply the scenario's run settings to the data and solver. Cost settings take effect when costs are first loaded.
+    private void applySettings() {
+        HashMap<String, String> settings = data.getSettings();
+        Integer pathThreads = getIntSetting(settings, "PathThreads", 1);
+        if (pathThreads != null) {
+            solver.setNumThreads(pathThreads);
+        }
+        Integer roundSize = getIntSetting(settings, "RoundSize", 1);
+        if (roundSize != null) {
+            solver.setRoundSize(roundSize);
+        }
+        Boolean mapCosts = getBooleanSetting(settings, "MapCosts");
+        if (mapCosts != null) {
+            data.setMapCosts(mapCosts);
+        }
+        String costPrecision = getChoiceSetting(settings, "CostPrecision", "double", "float", "quantized");
+        if (costPrecision != null) {
+            data.setCostPrecision(costPrecision);
+        }
+        Boolean useRasterCosts = getBooleanSetting(settings, "UseRasterCosts");
+        if (useRasterCosts != null) {
+            data.setUseRasterCosts(useRasterCosts);
+        }
+        Boolean corridorSearch = getBooleanSetting(settings, "CorridorSearch");
+        if (corridorSearch != null) {
+            solver.setCorridorSearch(corridorSearch);
+        }
+        String corridorShape = getChoiceSetting(settings, "CorridorShape", "ellipse", "box");
+        if (corridorShape != null) {
+            solver.setCorridorShape(corridorShape);
+        }
+        Double corridorWidth = getDoubleSetting(settings, "CorridorWidth", 0);
+        if (corridorWidth != null) {
+            solver.setCorridorWidth(corridorWidth);
+        }
+        Integer minCorridorMargin = getIntSetting(settings, "MinCorridorMargin", 0);
+        if (minCorridorMargin != null) {
+            solver.setMinCorridorMargin(minCorridorMargin);
+        }
+        String queueType = getChoiceSetting(settings, "QueueType", "binary", "radix");
+        if (queueType != null) {
+            solver.setQueueType(queueType);
+        }
+        Integer coarseLevels = getIntSetting(settings, "CoarseLevels", 0);
+        if (coarseLevels != null) {
+            solver.setCoarseLevels(coarseLevels);
+        }
+        Integer coarseCorridorRadius = getIntSetting(settings, "CoarseCorridorRadius", 0);
+        if (coarseCorridorRadius != null) {
+            solver.setCoarseCorridorRadius(coarseCorridorRadius);
+        }
+        Boolean compareCoarseRouting = getBooleanSetting(settings, "CompareCoarseRouting");
+        if (compareCoarseRouting != null) {
+            solver.setCompareCoarseRouting(compareCoarseRouting);
+        }
+        Boolean useRoutingHierarchy = getBooleanSetting(settings, "UseRoutingHierarchy");
+        if (useRoutingHierarchy != null) {
+            solver.setUseRoutingHierarchy(useRoutingHierarchy);
+        }
+        Integer tileCacheSize = getIntSetting(settings, "TileCacheSize", 0);
+        if (tileCacheSize != null) {
+            data.setTileCacheSize(tileCacheSize);
+        }
+        String candidateGraphType = getChoiceSetting(settings, "CandidateGraphType", "delaunay", "knn", "gabriel", "rng");
+        if (candidateGraphType != null) {
+            solver.setCandidateGraphType(candidateGraphType);
+        }
+        Integer candidateNeighbors = getIntSetting(settings, "CandidateNeighbors", 1);
+        if (candidateNeighbors != null) {
+            solver.setCandidateNeighbors(candidateNeighbors);
+        }
+    }
+
     public void toggleSourceDisplay(boolean show) {
         if (show) {
             /*Set<Integer> test = data.getJunctions();
@@ -333,12 +407,103 @@ public class ControlActions {
         
         // Run heuristic
         Heuristic heuristic = new Heuristic(data);
+        applyHeuristicSettings(heuristic);
         heuristic.solve(Integer.parseInt(numPairs), modelVersion);
         
         // Save solution
         DataInOut.saveHeuristicSolution(directory, heuristic);
     }
 
+    // Apply the scenario's run settings to the heuristic
+    private void applyHeuristicSettings(Heuristic heuristic) {
+        HashMap<String, String> settings = data.getSettings();
+        Boolean incremental = getBooleanSetting(settings, "Incremental");
+        if (incremental != null) {
+            heuristic.setIncremental(incremental);
+        }
+        Integer heuristicThreads = getIntSetting(settings, "HeuristicThreads", 1);
+        if (heuristicThreads != null) {
+            heuristic.setNumThreads(heuristicThreads);
+        }
+        Boolean pointToPoint = getBooleanSetting(settings, "PointToPoint");
+        if (pointToPoint != null) {
+            heuristic.setPointToPoint(pointToPoint);
+        }
+        Boolean aStar = getBooleanSetting(settings, "AStar");
+        if (aStar != null) {
+            heuristic.setAStar(aStar);
+        }
+        Boolean oneToMany = getBooleanSetting(settings, "OneToMany");
+        if (oneToMany != null) {
+            heuristic.setOneToMany(oneToMany);
+        }
+        Boolean lazy = getBooleanSetting(settings, "Lazy");
+        if (lazy != null) {
+            heuristic.setLazy(lazy);
+        }
+        Boolean prune = getBooleanSetting(settings, "Prune");
+        if (prune != null) {
+            heuristic.setPrune(prune);
+        }
+    }
+
+    // Setting values are null when the key is absent or the value is invalid, which keeps the default
+    private Integer getIntSetting(HashMap<String, String> settings, String key, int min) {
+        String value = settings.get(key);
+        if (value != null) {
+            try {
+                int number = Integer.parseInt(value);
+                if (number >= min) {
+                    return number;
+                }
+            } catch (NumberFormatException e) {
+            }
+            reportInvalidSetting(key, value, "an integer of at least " + min);
+        }
+        return null;
+    }
+
+    private Double getDoubleSetting(HashMap<String, String> settings, String key, double min) {
+        String value = settings.get(key);
+        if (value != null) {
+            try {
+                double number = Double.parseDouble(value);
+                if (number >= min) {
+                    return number;
+                }
+            } catch (NumberFormatException e) {
+            }
+            reportInvalidSetting(key, value, "a number of at least " + min);
+        }
+        return null;
+    }
+
+    private Boolean getBooleanSetting(HashMap<String, String> settings, String key) {
+        String value = getChoiceSetting(settings, key, "true", "false");
+        return value == null ? null : Boolean.valueOf(value);
+    }
+
+    private String getChoiceSetting(HashMap<String, String> settings, String key, String... choices) {
+        String value = settings.get(key);
+        if (value != null) {
+            for (String choice : choices) {
+                if (choice.equalsIgnoreCase(value)) {
+                    return choice;
+                }
+            }
+            reportInvalidSetting(key, value, "one of " + String.join(", ", choices));
+        }
+        return null;
+    }
+
+    private void reportInvalidSetting(String key, String value, String expected) {
+        String message = "Invalid setting " + key + " " + value + " in Settings.txt, expected " + expected + ". Using the default.";
+        System.out.println(message);
+        if (messenger != null) {
+            messenger.appendText(message + "\n");
+        }
+    }
+
     public void runCPLEX() {
         // Check if CPLEX exists.
         try {
@@ -0,0 +1,19 @@
+package solver;
+
+import dataStore.Edge;
+import java.util.HashSet;
+
+/**
+ * Chooses the pairs of source and sink cells that candidate paths are found between.
+ * Selected in Solver by candidate graph type.
+ *
+ * @author yaw
+ */
+public interface CandidateGraphGenerator {
+
+    // Name used in reports
+    public String getName();
+
+    // Pairs of cells to join, each from the lower numbered cell to the higher
+    public HashSet<Edge> generatePairs(int[] cells);
+}
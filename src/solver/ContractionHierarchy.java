@@ -0,0 +1,614 @@
+package solver;
+
+import dataStore.CostSurface;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+ * Contraction hierarchy over a routing cost surface for fast point to point queries.
+ * Cells are contracted in nested dissection order: the surface is split in half across its longer side
+ * by a line of cells, each half is ordered the same way, and the line comes last. Each cell keeps the arcs to
+ * cells contracted after it. Shortcuts remember the cell they skip so paths can be unpacked to cells.
+ * A query searches up the hierarchy from both ends, so it only settles a small part of the surface.
+ * Built from fixed costs, so it does not see later changes such as the routing cost discounts of Solver.
+ * File layout, little endian: MAGIC, VERSION, width, height, number of upward and downward arcs, then the arc
+ * arrays. MAGIC is written last, so a file left half written is never opened.
+ *
+ * @author yaw
+ */
+public class ContractionHierarchy {
+
+    public static final int MAGIC = 0x43484945;     // "CHIE"
+    public static final int VERSION = 1;
+    private static final int WITNESS_SETTLE_LIMIT = 60;     // Cells settled per witness search
+    private static final int BUFFER_SIZE = 1 << 20;
+
+    private int width;
+    private int height;
+
+    // Arcs to cells contracted later, by cell, in compressed sparse row form
+    private int[] upFirst;      // [cellNum] = first arc leaving cellNum upward, [numCells + 1] = numUpArcs
+    private int[] upHead;
+    private double[] upCost;
+    private int[] upMiddle;     // [arcNum] = cell the shortcut skips, -1 for an arc of the surface
+    private int[] downFirst;    // [cellNum] = first arc entering cellNum from a cell contracted later
+    private int[] downTail;
+    private double[] downCost;
+    private int[] downMiddle;
+
+    private ThreadLocal<QuerySpace> querySpaces = new ThreadLocal<>();
+
+    private ContractionHierarchy(int width, int height) {
+        this.width = width;
+        this.height = height;
+    }
+
+    // Contract every cell of routingCosts
+    public ContractionHierarchy(CostSurface routingCosts) {
+        this(routingCosts.getWidth(), routingCosts.getHeight());
+        new Builder(routingCosts).build();
+    }
+
+    public int getWidth() {
+        return width;
+    }
+
+    public int getHeight() {
+        return height;
+    }
+
+    public int getNumShortcuts() {
+        int numShortcuts = 0;
+        for (int middle : upMiddle) {
+            if (middle >= 0) {
+                numShortcuts++;
+            }
+        }
+        for (int middle : downMiddle) {
+            if (middle >= 0) {
+                numShortcuts++;
+            }
+        }
+        return numShortcuts;
+    }
+
+    // Cells of the cheapest path from src to dest, or null if dest cannot be reached
+    public int[] getPath(int src, int dest) {
+        if (src == dest) {
+            return new int[]{src};
+        }
+        QuerySpace space = querySpaces.get();
+        if (space == null) {
+            space = new QuerySpace(width * height + 1);
+            querySpaces.set(space);
+        }
+        space.reset();
+        double[] upCosts = space.upCosts;
+        double[] downCosts = space.downCosts;
+        upCosts[src] = 0;
+        space.touched[space.numTouched++] = src;
+        space.upQueue.insertOrDecrease(src, 0);
+        downCosts[dest] = 0;
+        space.touched[space.numTouched++] = dest;
+        space.downQueue.insertOrDecrease(dest, 0);
+
+        double bestCost = Double.MAX_VALUE;
+        int meeting = -1;
+        while (true) {
+            double upKey = space.upQueue.isEmpty() ? Double.MAX_VALUE : space.upQueue.peekKey();
+            double downKey = space.downQueue.isEmpty() ? Double.MAX_VALUE : space.downQueue.peekKey();
+            if (Math.min(upKey, downKey) >= bestCost) {
+                break;
+            }
+            boolean up = upKey <= downKey;
+            IndexedMinHeap queue = up ? space.upQueue : space.downQueue;
+            double[] costs = up ? upCosts : downCosts;
+            double[] otherCosts = up ? downCosts : upCosts;
+            int[] previous = up ? space.upPrevious : space.downPrevious;
+            int[] previousArc = up ? space.upPreviousArc : space.downPreviousArc;
+            int[] first = up ? upFirst : downFirst;
+            int[] heads = up ? upHead : downTail;
+            double[] arcCosts = up ? upCost : downCost;
+            int[] otherFirst = up ? downFirst : upFirst;
+            int[] otherHeads = up ? downTail : upHead;
+            double[] otherArcCosts = up ? downCost : upCost;
+
+            int u = queue.poll();
+            if (otherCosts[u] < Double.MAX_VALUE && costs[u] + otherCosts[u] < bestCost) {
+                bestCost = costs[u] + otherCosts[u];
+                meeting = u;
+            }
+
+            // Stall u if a cell above it reaches it for less, since no shortest path then goes up through u
+            boolean stalled = false;
+            for (int arc = otherFirst[u]; arc < otherFirst[u + 1] && !stalled; arc++) {
+                int v = otherHeads[arc];
+                stalled = costs[v] < Double.MAX_VALUE && costs[v] + otherArcCosts[arc] < costs[u];
+            }
+            if (stalled) {
+                continue;
+            }
+            for (int arc = first[u]; arc < first[u + 1]; arc++) {
+                int v = heads[arc];
+                double altCost = costs[u] + arcCosts[arc];
+                if (altCost < costs[v]) {
+                    if (upCosts[v] == Double.MAX_VALUE && downCosts[v] == Double.MAX_VALUE) {
+                        space.touched[space.numTouched++] = v;
+                    }
+                    costs[v] = altCost;
+                    previous[v] = u;
+                    previousArc[v] = arc;
+                    queue.insertOrDecrease(v, altCost);
+                    if (otherCosts[v] < Double.MAX_VALUE && altCost + otherCosts[v] < bestCost) {
+                        bestCost = altCost + otherCosts[v];
+                        meeting = v;
+                    }
+                }
+            }
+        }
+        space.upQueue.clear();
+        space.downQueue.clear();
+        if (meeting < 0) {
+            return null;
+        }
+
+        // Unpack arcs from src up to the meeting cell, then down to dest
+        ArrayList<Integer> path = new ArrayList<>();
+        path.add(src);
+        ArrayList<Integer> upArcs = new ArrayList<>();
+        for (int node = meeting; node != src; node = space.upPrevious[node]) {
+            upArcs.add(space.upPreviousArc[node]);
+        }
+        for (int i = upArcs.size() - 1; i >= 0; i--) {
+            int arc = upArcs.get(i);
+            unpack(space.upPrevious[upHead[arc]], upHead[arc], upMiddle[arc], path);
+        }
+        for (int node = meeting; node != dest; node = space.downPrevious[node]) {
+            int arc = space.downPreviousArc[node];
+            unpack(node, space.downPrevious[node], downMiddle[arc], path);
+        }
+        int[] cells = new int[path.size()];
+        for (int i = 0; i < cells.length; i++) {
+            cells[i] = path.get(i);
+        }
+        return cells;
+    }
+
+    // Add the cells after tail on the arc from tail to head to path, expanding shortcuts through their middle cells
+    private void unpack(int tail, int head, int middle, ArrayList<Integer> path) {
+        ArrayList<int[]> stack = new ArrayList<>();
+        stack.add(new int[]{tail, head, middle});
+        while (!stack.isEmpty()) {
+            int[] arc = stack.remove(stack.size() - 1);
+            if (arc[2] < 0) {
+                path.add(arc[1]);
+            } else {
+                // The middle cell was contracted first, so it holds both halves of the shortcut
+                int m = arc[2];
+                int secondArc = findArc(upFirst, upHead, m, arc[1]);
+                int firstArc = findArc(downFirst, downTail, m, arc[0]);
+                stack.add(new int[]{m, arc[1], upMiddle[secondArc]});
+                stack.add(new int[]{arc[0], m, downMiddle[firstArc]});
+            }
+        }
+    }
+
+    private int findArc(int[] first, int[] ends, int cellNum, int end) {
+        for (int arc = first[cellNum]; arc < first[cellNum + 1]; arc++) {
+            if (ends[arc] == end) {
+                return arc;
+            }
+        }
+        throw new IllegalStateException("Missing half of shortcut at cell " + cellNum);
+    }
+
+    public void save(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(0);
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.putInt(0);   // MAGIC is written last
+            buffer.putInt(VERSION);
+            buffer.putInt(width);
+            buffer.putInt(height);
+            buffer.putInt(upHead.length);
+            buffer.putInt(downTail.length);
+            writeInts(channel, buffer, upFirst);
+            writeInts(channel, buffer, upHead);
+            writeDoubles(channel, buffer, upCost);
+            writeInts(channel, buffer, upMiddle);
+            writeInts(channel, buffer, downFirst);
+            writeInts(channel, buffer, downTail);
+            writeDoubles(channel, buffer, downCost);
+            writeInts(channel, buffer, downMiddle);
+            flush(channel, buffer);
+            channel.force(true);
+
+            ByteBuffer magic = ByteBuffer.allocate(4).order(ByteOrder.LITTLE_ENDIAN);
+            magic.putInt(MAGIC);
+            magic.rewind();
+            channel.write(magic, 0);
+            channel.force(true);
+        }
+    }
+
+    public static ContractionHierarchy load(File file) throws IOException {
+        try (RandomAccessFile raf = new RandomAccessFile(file, "r")) {
+            FileChannel channel = raf.getChannel();
+            ByteBuffer buffer = ByteBuffer.allocate(BUFFER_SIZE).order(ByteOrder.LITTLE_ENDIAN);
+            buffer.limit(0);
+            fill(channel, buffer, 24);
+            if (buffer.getInt() != MAGIC) {
+                throw new IOException(file.getName() + " is not a complete routing hierarchy file.");
+            }
+            if (buffer.getInt() != VERSION) {
+                throw new IOException(file.getName() + " has an unsupported routing hierarchy version.");
+            }
+            ContractionHierarchy hierarchy = new ContractionHierarchy(buffer.getInt(), buffer.getInt());
+            int numUpArcs = buffer.getInt();
+            int numDownArcs = buffer.getInt();
+            int numCells = hierarchy.width * hierarchy.height;
+            hierarchy.upFirst = readInts(channel, buffer, numCells + 2);
+            hierarchy.upHead = readInts(channel, buffer, numUpArcs);
+            hierarchy.upCost = readDoubles(channel, buffer, numUpArcs);
+            hierarchy.upMiddle = readInts(channel, buffer, numUpArcs);
+            hierarchy.downFirst = readInts(channel, buffer, numCells + 2);
+            hierarchy.downTail = readInts(channel, buffer, numDownArcs);
+            hierarchy.downCost = readDoubles(channel, buffer, numDownArcs);
+            hierarchy.downMiddle = readInts(channel, buffer, numDownArcs);
+            return hierarchy;
+        }
+    }
+
+    private static void writeInts(FileChannel channel, ByteBuffer buffer, int[] values) throws IOException {
+        for (int value : values) {
+            if (buffer.remaining() < 4) {
+                flush(channel, buffer);
+            }
+            buffer.putInt(value);
+        }
+    }
+
+    private static void writeDoubles(FileChannel channel, ByteBuffer buffer, double[] values) throws IOException {
+        for (double value : values) {
+            if (buffer.remaining() < 8) {
+                flush(channel, buffer);
+            }
+            buffer.putDouble(value);
+        }
+    }
+
+    private static void flush(FileChannel channel, ByteBuffer buffer) throws IOException {
+        buffer.flip();
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+        buffer.clear();
+    }
+
+    private static int[] readInts(FileChannel channel, ByteBuffer buffer, int length) throws IOException {
+        int[] values = new int[length];
+        for (int i = 0; i < length; i++) {
+            if (buffer.remaining() < 4) {
+                fill(channel, buffer, 4);
+            }
+            values[i] = buffer.getInt();
+        }
+        return values;
+    }
+
+    private static double[] readDoubles(FileChannel channel, ByteBuffer buffer, int length) throws IOException {
+        double[] values = new double[length];
+        for (int i = 0; i < length; i++) {
+            if (buffer.remaining() < 8) {
+                fill(channel, buffer, 8);
+            }
+            values[i] = buffer.getDouble();
+        }
+        return values;
+    }
+
+    // Read from channel until buffer holds at least numBytes
+    private static void fill(FileChannel channel, ByteBuffer buffer, int numBytes) throws IOException {
+        buffer.compact();
+        while (buffer.position() < numBytes) {
+            if (channel.read(buffer) < 0) {
+                throw new IOException("Routing hierarchy file ended early.");
+            }
+        }
+        buffer.flip();
+    }
+
+    // Contracts cells over adjacency lists that only hold arcs between cells not yet contracted
+    private class Builder {
+
+        private CostSurface routingCosts;
+        private int numCells;
+
+        private int[][] outHeads;   // [cellNum] = heads of arcs leaving cellNum
+        private double[][] outCosts;
+        private int[][] outMiddles;
+        private int[] outDegrees;
+        private int[][] inTails;    // [cellNum] = tails of arcs entering cellNum
+        private double[][] inCosts;
+        private int[][] inMiddles;
+        private int[] inDegrees;
+
+        private int[] order;    // [rank] = cell contracted at rank
+        private int numOrdered;
+        private boolean[] contracted;
+
+        // Witness search buffers
+        private IndexedMinHeap witnessQueue;
+        private double[] witnessCosts;
+        private int[] witnessTouched;
+        private int numWitnessTouched;
+
+        public Builder(CostSurface routingCosts) {
+            this.routingCosts = routingCosts;
+            numCells = routingCosts.getNumCells();
+            outHeads = new int[numCells + 1][];
+            outCosts = new double[numCells + 1][];
+            outMiddles = new int[numCells + 1][];
+            outDegrees = new int[numCells + 1];
+            inTails = new int[numCells + 1][];
+            inCosts = new double[numCells + 1][];
+            inMiddles = new int[numCells + 1][];
+            inDegrees = new int[numCells + 1];
+            contracted = new boolean[numCells + 1];
+            witnessQueue = new IndexedMinHeap(numCells + 1);
+            witnessCosts = new double[numCells + 1];
+            witnessTouched = new int[numCells + 1];
+            Arrays.fill(witnessCosts, Double.MAX_VALUE);
+        }
+
+        public void build() {
+            for (int cellNum = 1; cellNum <= numCells; cellNum++) {
+                outHeads[cellNum] = new int[8];
+                outCosts[cellNum] = new double[8];
+                outMiddles[cellNum] = new int[8];
+                inTails[cellNum] = new int[8];
+                inCosts[cellNum] = new double[8];
+                inMiddles[cellNum] = new int[8];
+            }
+            for (int cellNum = 1; cellNum <= numCells; cellNum++) {
+                int neighborMask = routingCosts.getNeighborMask(cellNum);
+                for (int neighborNum = 0; neighborNum < 8; neighborNum++) {
+                    if ((neighborMask & (1 << neighborNum)) != 0) {
+                        double cost = routingCosts.getCost(cellNum, neighborNum);
+                        if (cost < Double.MAX_VALUE) {
+                            addArc(cellNum, cellNum + routingCosts.getNeighborOffset(neighborNum), cost, -1);
+                        }
+                    }
+                }
+            }
+
+            order = new int[numCells];
+            numOrdered = 0;
+            addDissectionOrder(0, 0, routingCosts.getWidth(), routingCosts.getHeight());
+            for (int v : order) {
+                contract(v);
+            }
+            makeArcArrays();
+        }
+
+        // Add the cells of columns x1 to x2 and rows y1 to y2, exclusive of x2 and y2, to order
+        private void addDissectionOrder(int x1, int y1, int x2, int y2) {
+            if ((x2 - x1) * (y2 - y1) <= 4) {
+                for (int y = y1; y < y2; y++) {
+                    for (int x = x1; x < x2; x++) {
+                        order[numOrdered++] = y * routingCosts.getWidth() + x + 1;
+                    }
+                }
+            } else if (x2 - x1 >= y2 - y1) {
+                int middle = (x1 + x2) / 2;
+                addDissectionOrder(x1, y1, middle, y2);
+                addDissectionOrder(middle + 1, y1, x2, y2);
+                addDissectionOrder(middle, y1, middle + 1, y2);
+            } else {
+                int middle = (y1 + y2) / 2;
+                addDissectionOrder(x1, y1, x2, middle);
+                addDissectionOrder(x1, middle + 1, x2, y2);
+                addDissectionOrder(x1, middle, x2, middle + 1);
+            }
+        }
+
+        // Add the shortcuts contracting v needs to shortcuts as {tail, head, cost}
+        private void findShortcuts(int v, ArrayList<double[]> shortcuts) {
+            for (int i = 0; i < inDegrees[v]; i++) {
+                int u = inTails[v][i];
+                double maxCost = 0;
+                for (int j = 0; j < outDegrees[v]; j++) {
+                    if (outHeads[v][j] != u) {
+                        maxCost = Math.max(maxCost, inCosts[v][i] + outCosts[v][j]);
+                    }
+                }
+                witnessSearch(u, v, maxCost);
+                for (int j = 0; j < outDegrees[v]; j++) {
+                    int w = outHeads[v][j];
+                    double cost = inCosts[v][i] + outCosts[v][j];
+                    if (w != u && witnessCosts[w] > cost) {
+                        shortcuts.add(new double[]{u, w, cost});
+                    }
+                }
+            }
+        }
+
+        // Costs from u avoiding v up to maxCost, settling at most WITNESS_SETTLE_LIMIT cells
+        private void witnessSearch(int u, int v, double maxCost) {
+            for (int i = 0; i < numWitnessTouched; i++) {
+                witnessCosts[witnessTouched[i]] = Double.MAX_VALUE;
+            }
+            numWitnessTouched = 0;
+            witnessCosts[u] = 0;
+            witnessTouched[numWitnessTouched++] = u;
+            witnessQueue.insertOrDecrease(u, 0);
+            int numSettled = 0;
+            while (!witnessQueue.isEmpty() && numSettled < WITNESS_SETTLE_LIMIT) {
+                int x = witnessQueue.poll();
+                numSettled++;
+                if (witnessCosts[x] > maxCost) {
+                    break;
+                }
+                for (int j = 0; j < outDegrees[x]; j++) {
+                    int y = outHeads[x][j];
+                    double altCost = witnessCosts[x] + outCosts[x][j];
+                    if (y != v && altCost < witnessCosts[y]) {
+                        if (witnessCosts[y] == Double.MAX_VALUE) {
+                            witnessTouched[numWitnessTouched++] = y;
+                        }
+                        witnessCosts[y] = altCost;
+                        witnessQueue.insertOrDecrease(y, altCost);
+                    }
+                }
+            }
+            witnessQueue.clear();
+        }
+
+        // Remove v from the lists of its neighbors and join them with shortcuts. The lists of v are kept as its
+        // arcs to cells contracted later.
+        private void contract(int v) {
+            ArrayList<double[]> shortcuts = new ArrayList<>();
+            findShortcuts(v, shortcuts);
+            contracted[v] = true;
+            for (int i = 0; i < inDegrees[v]; i++) {
+                removeArc(inTails[v][i], v);
+            }
+            for (int j = 0; j < outDegrees[v]; j++) {
+                removeArc(v, outHeads[v][j]);
+            }
+            for (double[] shortcut : shortcuts) {
+                addArc((int) shortcut[0], (int) shortcut[1], shortcut[2], v);
+            }
+        }
+
+        // Add an arc, or lower the cost of the arc already between the cells
+        private void addArc(int tail, int head, double cost, int middle) {
+            for (int i = 0; i < outDegrees[tail]; i++) {
+                if (outHeads[tail][i] == head) {
+                    if (cost < outCosts[tail][i]) {
+                        outCosts[tail][i] = cost;
+                        outMiddles[tail][i] = middle;
+                        for (int j = 0; j < inDegrees[head]; j++) {
+                            if (inTails[head][j] == tail) {
+                                inCosts[head][j] = cost;
+                                inMiddles[head][j] = middle;
+                            }
+                        }
+                    }
+                    return;
+                }
+            }
+            if (outDegrees[tail] == outHeads[tail].length) {
+                int length = 2 * outHeads[tail].length;
+                outHeads[tail] = Arrays.copyOf(outHeads[tail], length);
+                outCosts[tail] = Arrays.copyOf(outCosts[tail], length);
+                outMiddles[tail] = Arrays.copyOf(outMiddles[tail], length);
+            }
+            outHeads[tail][outDegrees[tail]] = head;
+            outCosts[tail][outDegrees[tail]] = cost;
+            outMiddles[tail][outDegrees[tail]++] = middle;
+            if (inDegrees[head] == inTails[head].length) {
+                int length = 2 * inTails[head].length;
+                inTails[head] = Arrays.copyOf(inTails[head], length);
+                inCosts[head] = Arrays.copyOf(inCosts[head], length);
+                inMiddles[head] = Arrays.copyOf(inMiddles[head], length);
+            }
+            inTails[head][inDegrees[head]] = tail;
+            inCosts[head][inDegrees[head]] = cost;
+            inMiddles[head][inDegrees[head]++] = middle;
+        }
+
+        // Remove the arc from tail to head from the list of whichever end is not being contracted
+        private void removeArc(int tail, int head) {
+            if (!contracted[tail]) {
+                for (int i = 0; i < outDegrees[tail]; i++) {
+                    if (outHeads[tail][i] == head) {
+                        int last = --outDegrees[tail];
+                        outHeads[tail][i] = outHeads[tail][last];
+                        outCosts[tail][i] = outCosts[tail][last];
+                        outMiddles[tail][i] = outMiddles[tail][last];
+                        break;
+                    }
+                }
+            }
+            if (!contracted[head]) {
+                for (int j = 0; j < inDegrees[head]; j++) {
+                    if (inTails[head][j] == tail) {
+                        int last = --inDegrees[head];
+                        inTails[head][j] = inTails[head][last];
+                        inCosts[head][j] = inCosts[head][last];
+                        inMiddles[head][j] = inMiddles[head][last];
+                        break;
+                    }
+                }
+            }
+        }
+
+        private void makeArcArrays() {
+            upFirst = new int[numCells + 2];
+            downFirst = new int[numCells + 2];
+            for (int cellNum = 1; cellNum <= numCells; cellNum++) {
+                upFirst[cellNum + 1] = upFirst[cellNum] + outDegrees[cellNum];
+                downFirst[cellNum + 1] = downFirst[cellNum] + inDegrees[cellNum];
+            }
+            upHead = new int[upFirst[numCells + 1]];
+            upCost = new double[upHead.length];
+            upMiddle = new int[upHead.length];
+            downTail = new int[downFirst[numCells + 1]];
+            downCost = new double[downTail.length];
+            downMiddle = new int[downTail.length];
+            for (int cellNum = 1; cellNum <= numCells; cellNum++) {
+                System.arraycopy(outHeads[cellNum], 0, upHead, upFirst[cellNum], outDegrees[cellNum]);
+                System.arraycopy(outCosts[cellNum], 0, upCost, upFirst[cellNum], outDegrees[cellNum]);
+                System.arraycopy(outMiddles[cellNum], 0, upMiddle, upFirst[cellNum], outDegrees[cellNum]);
+                System.arraycopy(inTails[cellNum], 0, downTail, downFirst[cellNum], inDegrees[cellNum]);
+                System.arraycopy(inCosts[cellNum], 0, downCost, downFirst[cellNum], inDegrees[cellNum]);
+                System.arraycopy(inMiddles[cellNum], 0, downMiddle, downFirst[cellNum], inDegrees[cellNum]);
+            }
+        }
+    }
+
+    // Per-thread query buffers
+    private class QuerySpace {
+
+        public IndexedMinHeap upQueue;
+        public IndexedMinHeap downQueue;
+        public double[] upCosts;
+        public double[] downCosts;
+        public int[] upPrevious;
+        public int[] downPrevious;
+        public int[] upPreviousArc;
+        public int[] downPreviousArc;
+        public int[] touched;   // Cells given a cost by the last query
+        public int numTouched;
+
+        public QuerySpace(int numNodes) {
+            upQueue = new IndexedMinHeap(numNodes);
+            downQueue = new IndexedMinHeap(numNodes);
+            upCosts = new double[numNodes];
+            downCosts = new double[numNodes];
+            upPrevious = new int[numNodes];
+            downPrevious = new int[numNodes];
+            upPreviousArc = new int[numNodes];
+            downPreviousArc = new int[numNodes];
+            touched = new int[numNodes];
+            Arrays.fill(upCosts, Double.MAX_VALUE);
+            Arrays.fill(downCosts, Double.MAX_VALUE);
+        }
+
+        public void reset() {
+            for (int i = 0; i < numTouched; i++) {
+                upCosts[touched[i]] = Double.MAX_VALUE;
+                downCosts[touched[i]] = Double.MAX_VALUE;
+            }
+            numTouched = 0;
+        }
+    }
+}
@@ -0,0 +1,94 @@
+package solver;
+
+import dataStore.CostSurface;
+import dataStore.FloatCostSurface;
+import java.util.BitSet;
+
+/**
+ * Coarser copies of a routing cost surface for coarse to fine routing. Level 0 is the surface itself and each
+ * level above aggregates 2x2 cells of the one below, so cells on level k are 2^k cells wide.
+ * Levels above 0 are stored as floats since they only guide the search.
+ *
+ * @author yaw
+ */
+public class CostPyramid {
+
+    private CostSurface[] levels;
+
+    public CostPyramid(CostSurface surface, int numLevels) {
+        levels = new CostSurface[numLevels + 1];
+        levels[0] = surface;
+        for (int level = 1; level <= numLevels; level++) {
+            levels[level] = aggregate(levels[level - 1]);
+        }
+    }
+
+    // Cost to each coarse neighbor is twice the average cost of the 2x2 fine cells to their neighbor in the same
+    // direction. Fine cells that cannot move that way are skipped, and if none can, neither can the coarse cell.
+    private CostSurface aggregate(CostSurface fine) {
+        int width = (fine.getWidth() + 1) / 2;
+        int height = (fine.getHeight() + 1) / 2;
+        CostSurface coarse = new FloatCostSurface(width, height);
+        for (int coarseCell = 1; coarseCell <= coarse.getNumCells(); coarseCell++) {
+            int x = (coarseCell - 1) % width * 2;
+            int y = (coarseCell - 1) / width * 2;
+            int coarseMask = coarse.getNeighborMask(coarseCell);
+            for (int neighborNum = 0; neighborNum < 8; neighborNum++) {
+                if ((coarseMask & (1 << neighborNum)) != 0) {
+                    double totalCost = 0;
+                    int numCosts = 0;
+                    for (int fineY = y; fineY < Math.min(y + 2, fine.getHeight()); fineY++) {
+                        for (int fineX = x; fineX < Math.min(x + 2, fine.getWidth()); fineX++) {
+                            int fineCell = fineY * fine.getWidth() + fineX + 1;
+                            if ((fine.getNeighborMask(fineCell) & (1 << neighborNum)) != 0) {
+                                double cost = fine.getCost(fineCell, neighborNum);
+                                if (cost < Double.MAX_VALUE) {
+                                    totalCost += cost;
+                                    numCosts++;
+                                }
+                            }
+                        }
+                    }
+                    if (numCosts > 0) {
+                        coarse.setCost(coarseCell, neighborNum, 2 * totalCost / numCosts);
+                    }
+                }
+            }
+        }
+        return coarse;
+    }
+
+    public int getNumLevels() {
+        return levels.length - 1;
+    }
+
+    public CostSurface getLevel(int level) {
+        return levels[level];
+    }
+
+    // Cell on level that holds cellNum of level 0
+    public int getLevelCell(int cellNum, int level) {
+        int x = ((cellNum - 1) % levels[0].getWidth()) >> level;
+        int y = ((cellNum - 1) / levels[0].getWidth()) >> level;
+        return y * levels[level].getWidth() + x + 1;
+    }
+
+    // Cells on level - 1 held by the cells of level within radius cells of pathCells
+    public BitSet expand(int level, BitSet pathCells, int radius) {
+        CostSurface coarse = levels[level];
+        CostSurface fine = levels[level - 1];
+        BitSet fineCells = new BitSet(fine.getNumCells() + 1);
+        for (int cellNum = pathCells.nextSetBit(0); cellNum >= 0; cellNum = pathCells.nextSetBit(cellNum + 1)) {
+            int x = (cellNum - 1) % coarse.getWidth();
+            int y = (cellNum - 1) / coarse.getWidth();
+            int fineX1 = 2 * Math.max(x - radius, 0);
+            int fineX2 = Math.min(2 * Math.min(x + radius, coarse.getWidth() - 1) + 1, fine.getWidth() - 1);
+            int fineY1 = 2 * Math.max(y - radius, 0);
+            int fineY2 = Math.min(2 * Math.min(y + radius, coarse.getHeight() - 1) + 1, fine.getHeight() - 1);
+            for (int fineY = fineY1; fineY <= fineY2; fineY++) {
+                fineCells.set(fineY * fine.getWidth() + fineX1 + 1, fineY * fine.getWidth() + fineX2 + 2);
+            }
+        }
+        return fineCells;
+    }
+}
@@ -2,98 +2,403 @@ package solver;
 
 import dataStore.DataStorer;
 import dataStore.Edge;
+import java.math.BigInteger;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.HashMap;
 import java.util.HashSet;
 
 /**
+ * Delaunay graph of source and sink cells by Bowyer-Watson insertion.
+ * Points are inserted in Hilbert curve order and found by walking from the last triangle made, so each insertion
+ * only touches triangles near the point. The outside of the hull is covered by ghost triangles that share a
+ * vertex at infinity, in place of a bounding triangle. Predicates are exact on the integer cell coordinates.
+ * Cocircular points are all joined, since every triple of them has an empty circumcircle.
  *
  * @author yaw
  */
-public class Delaunay {
-    private Point[] points;
+public class Delaunay implements CandidateGraphGenerator {
+
+    private static final int INFINITE = -1;    // Vertex at infinity shared by ghost triangles
+
     DataStorer data;
-    HashSet<Neighbors> edges;
+
+    // Points
+    private long[] xs;
+    private long[] ys;
+
+    // Triangles, counterclockwise. Ghost triangles have INFINITE as one vertex.
+    private int[] vertices;     // [triangleNum * 3 + i] = vertex i
+    private int[] neighbors;    // [triangleNum * 3 + i] = triangle across the edge opposite vertex i
+    private boolean[] removed;
+    private boolean[] inCavity;
+    private int numTriangles;
+    private ArrayList<Integer> freeTriangles;
+    private int lastTriangle;   // Where the next walk starts
+    private int walkSeed = 1;
 
     public Delaunay(DataStorer data) {
         this.data = data;
     }
 
+    @Override
+    public String getName() {
+        return "Delaunay";
+    }
+
+    @Override
+    public HashSet<Edge> generatePairs(int[] cells) {
+        return run(cells);
+    }
+
     public HashSet<Edge> run(int[] rawPoints) {
         if (rawPoints.length == 2) {
             HashSet<Edge> delaunayPairs = new HashSet<>();
             delaunayPairs.add(new Edge(rawPoints[0], rawPoints[1]));
             return delaunayPairs;
         }
-        
-        edges = new HashSet<>();
-        
-        points = new Point[rawPoints.length];
-        for (int ptNum = 0; ptNum < rawPoints.length; ptNum++) {
-            double[] coords = data.cellLocationToRawXY(rawPoints[ptNum]);
-            points[ptNum] = new Point(coords[0], coords[1]);
+
+        // Sources and sinks in the same cell are one point
+        int[] cells = Arrays.stream(rawPoints).distinct().toArray();
+        HashSet<Edge> delaunayPairs = new HashSet<>();
+        if (cells.length < 2) {
+            return delaunayPairs;
+        }
+        xs = new long[cells.length];
+        ys = new long[cells.length];
+        for (int ptNum = 0; ptNum < cells.length; ptNum++) {
+            double[] coords = data.cellLocationToRawXY(cells[ptNum]);
+            xs[ptNum] = (long) coords[0];
+            ys[ptNum] = (long) coords[1];
         }
-        
-        for (Point p : points) {
-            addPoint(p.x(), p.y());
+
+        // Start from the first three points in insertion order that are not collinear
+        Integer[] order = getHilbertOrder();
+        int third = 2;
+        while (third < order.length && orient(order[0], order[1], order[third]) == 0) {
+            third++;
         }
-        
-        HashSet<Edge> delaunayPairs = new HashSet<>();
-        
-        for (Neighbors n : edges) {
-            delaunayPairs.add(new Edge(n.cellLocations[0], n.cellLocations[1]));
+        if (third == order.length) {
+            // All points on a line. Join each to the next along it.
+            Arrays.sort(order, (p1, p2) -> xs[p1] != xs[p2] ? Long.compare(xs[p1], xs[p2]) : Long.compare(ys[p1], ys[p2]));
+            for (int i = 0; i < order.length - 1; i++) {
+                addEdge(cells, order[i], order[i + 1], delaunayPairs);
+            }
+            return delaunayPairs;
         }
-        
+
+        int capacity = 6 * cells.length + 16;
+        vertices = new int[3 * capacity];
+        neighbors = new int[3 * capacity];
+        removed = new boolean[capacity];
+        inCavity = new boolean[capacity];
+        numTriangles = 0;
+        freeTriangles = new ArrayList<>();
+        makeFirstTriangle(order[0], order[1], order[third]);
+        for (int i = 2; i < order.length; i++) {
+            if (i != third) {
+                insert(order[i]);
+            }
+        }
+
+        for (int t = 0; t < numTriangles; t++) {
+            if (!removed[t]) {
+                for (int i = 0; i < 3; i++) {
+                    int v1 = vertices[t * 3 + i];
+                    int v2 = vertices[t * 3 + (i + 1) % 3];
+                    if (v1 != INFINITE && v2 != INFINITE) {
+                        addEdge(cells, v1, v2, delaunayPairs);
+                    }
+                }
+            }
+        }
+        addCocircularEdges(cells, delaunayPairs);
         return delaunayPairs;
     }
-    
-    public void addPoint(double x, double y) {
-        for (int i = 0; i < points.length; i++) {
-            for (int j = i+1; j < points.length; j++) {
-                for (int k = j+1; k < points.length; k++) {
-                    boolean isTriangle = true;
-                    for (int a = 0; a < points.length; a++) {
-                        if (a == i || a == j || a == k) continue;
-                        if (points[a].inside(points[i], points[j], points[k])) {
-                           isTriangle = false;
-                           break;
+
+    // Point numbers sorted along a Hilbert curve over the bounding box of the points
+    private Integer[] getHilbertOrder() {
+        long minX = Arrays.stream(xs).min().getAsLong();
+        long minY = Arrays.stream(ys).min().getAsLong();
+        long range = Math.max(Arrays.stream(xs).max().getAsLong() - minX, Arrays.stream(ys).max().getAsLong() - minY) + 1;
+        long side = Long.highestOneBit(range) << 1;
+        long[] keys = new long[xs.length];
+        Integer[] order = new Integer[xs.length];
+        for (int ptNum = 0; ptNum < xs.length; ptNum++) {
+            keys[ptNum] = getHilbertIndex(side, xs[ptNum] - minX, ys[ptNum] - minY);
+            order[ptNum] = ptNum;
+        }
+        Arrays.sort(order, (p1, p2) -> Long.compare(keys[p1], keys[p2]));
+        return order;
+    }
+
+    // Distance along the Hilbert curve filling a side by side square
+    private static long getHilbertIndex(long side, long x, long y) {
+        long index = 0;
+        for (long s = side / 2; s > 0; s /= 2) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            index += s * s * ((3 * rx) ^ ry);
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = side - 1 - x;
+                    y = side - 1 - y;
+                }
+                long temp = x;
+                x = y;
+                y = temp;
+            }
+        }
+        return index;
+    }
+
+    // Triangle of a, b and c with a ghost triangle on each side
+    private void makeFirstTriangle(int a, int b, int c) {
+        if (orient(a, b, c) < 0) {
+            int temp = b;
+            b = c;
+            c = temp;
+        }
+        int t = newTriangle(a, b, c);
+        int ghostAB = newTriangle(b, a, INFINITE);
+        int ghostBC = newTriangle(c, b, INFINITE);
+        int ghostCA = newTriangle(a, c, INFINITE);
+        setNeighbors(t, ghostBC, ghostCA, ghostAB);
+        setNeighbors(ghostAB, ghostCA, ghostBC, t);
+        setNeighbors(ghostBC, ghostAB, ghostCA, t);
+        setNeighbors(ghostCA, ghostBC, ghostAB, t);
+        lastTriangle = t;
+    }
+
+    // Remove the triangles whose circumcircles hold v and join v to the edges around the hole
+    private void insert(int v) {
+        ArrayList<Integer> cavity = new ArrayList<>();
+        ArrayList<int[]> boundary = new ArrayList<>();  // {removed triangle, vertex opposite the edge, outside triangle}
+        int start = locate(v);
+        inCavity[start] = true;
+        cavity.add(start);
+        for (int c = 0; c < cavity.size(); c++) {
+            int t = cavity.get(c);
+            for (int i = 0; i < 3; i++) {
+                int other = neighbors[t * 3 + i];
+                if (!inCavity[other]) {
+                    if (isInConflict(other, v)) {
+                        inCavity[other] = true;
+                        cavity.add(other);
+                    } else {
+                        boundary.add(new int[]{t, i, other});
+                    }
+                }
+            }
+        }
+
+        // Fan of new triangles, each indexed by its first vertex to join it to the next
+        HashMap<Integer, Integer> triangleFrom = new HashMap<>();
+        ArrayList<Integer> newTriangles = new ArrayList<>();
+        for (int[] edge : boundary) {
+            int t = edge[0];
+            int a = vertices[t * 3 + (edge[1] + 1) % 3];
+            int b = vertices[t * 3 + (edge[1] + 2) % 3];
+            int outside = edge[2];
+            int newT = newTriangle(a, b, v);
+            neighbors[newT * 3 + 2] = outside;
+            for (int j = 0; j < 3; j++) {
+                if (neighbors[outside * 3 + j] == t) {
+                    neighbors[outside * 3 + j] = newT;
+                }
+            }
+            triangleFrom.put(a, newT);
+            newTriangles.add(newT);
+        }
+        for (int newT : newTriangles) {
+            int next = triangleFrom.get(vertices[newT * 3 + 1]);
+            neighbors[newT * 3] = next;
+            neighbors[next * 3 + 1] = newT;
+            if (vertices[newT * 3] != INFINITE && vertices[newT * 3 + 1] != INFINITE) {
+                lastTriangle = newT;
+            }
+        }
+        for (int t : cavity) {
+            inCavity[t] = false;
+            removed[t] = true;
+            freeTriangles.add(t);
+        }
+    }
+
+    // Walk toward v from the last triangle made. Returns the real triangle holding v, or the ghost triangle past
+    // the hull edge that v is outside of.
+    private int locate(int v) {
+        int t = lastTriangle;
+        while (!isGhost(t)) {
+            boolean moved = false;
+            walkSeed = walkSeed * 1103515245 + 12345;
+            int first = (walkSeed >>> 16) % 3;
+            for (int k = 0; k < 3 && !moved; k++) {
+                int i = (first + k) % 3;
+                if (orient(vertices[t * 3 + (i + 1) % 3], vertices[t * 3 + (i + 2) % 3], v) < 0) {
+                    t = neighbors[t * 3 + i];
+                    moved = true;
+                }
+            }
+            if (!moved) {
+                return t;
+            }
+        }
+        return t;
+    }
+
+    // v is strictly inside the circumcircle of t. For a ghost triangle, v is past its hull edge, or on the edge
+    // between its ends.
+    private boolean isInConflict(int t, int v) {
+        int a = vertices[t * 3];
+        int b = vertices[t * 3 + 1];
+        int c = vertices[t * 3 + 2];
+        if (a == INFINITE || b == INFINITE || c == INFINITE) {
+            int i = a == INFINITE ? 0 : b == INFINITE ? 1 : 2;
+            int e1 = vertices[t * 3 + (i + 1) % 3];
+            int e2 = vertices[t * 3 + (i + 2) % 3];
+            long side = orient(e1, e2, v);
+            return side > 0 || (side == 0 && isBetween(e1, e2, v));
+        }
+        return inCircle(a, b, c, v) > 0;
+    }
+
+    // Add all edges among points that lie on one circumcircle, found as neighboring triangles sharing it
+    private void addCocircularEdges(int[] cells, HashSet<Edge> delaunayPairs) {
+        int[] groups = new int[numTriangles];
+        for (int t = 0; t < numTriangles; t++) {
+            groups[t] = t;
+        }
+        boolean cocircular = false;
+        for (int t = 0; t < numTriangles; t++) {
+            if (!removed[t] && !isGhost(t)) {
+                for (int i = 0; i < 3; i++) {
+                    int other = neighbors[t * 3 + i];
+                    if (other > t && !isGhost(other)) {
+                        int j = 0;
+                        while (neighbors[other * 3 + j] != t) {
+                            j++;
+                        }
+                        if (inCircle(vertices[t * 3], vertices[t * 3 + 1], vertices[t * 3 + 2], vertices[other * 3 + j]) == 0) {
+                            groups[findGroup(groups, t)] = findGroup(groups, other);
+                            cocircular = true;
                         }
                     }
-                    if (isTriangle) {
-                        int point1Cell = data.xyToVectorized((int)points[i].x(), (int)points[i].y());
-                        int point2Cell = data.xyToVectorized((int)points[j].x(), (int)points[j].y());
-                        int point3Cell = data.xyToVectorized((int)points[k].x(), (int)points[k].y());
-                        Neighbors edge1 = new Neighbors(point1Cell, point2Cell);
-                        Neighbors edge2 = new Neighbors(point1Cell, point3Cell);
-                        Neighbors edge3 = new Neighbors(point2Cell, point3Cell);
-                        edges.add(edge1);
-                        edges.add(edge2);
-                        edges.add(edge3);
+                }
+            }
+        }
+        if (!cocircular) {
+            return;
+        }
+
+        HashMap<Integer, HashSet<Integer>> groupVertices = new HashMap<>();
+        for (int t = 0; t < numTriangles; t++) {
+            if (!removed[t] && !isGhost(t)) {
+                int group = findGroup(groups, t);
+                if (!groupVertices.containsKey(group)) {
+                    groupVertices.put(group, new HashSet<>());
+                }
+                for (int i = 0; i < 3; i++) {
+                    groupVertices.get(group).add(vertices[t * 3 + i]);
+                }
+            }
+        }
+        for (HashSet<Integer> circle : groupVertices.values()) {
+            if (circle.size() > 3) {
+                Integer[] circleVertices = circle.toArray(new Integer[0]);
+                for (int i = 0; i < circleVertices.length; i++) {
+                    for (int j = i + 1; j < circleVertices.length; j++) {
+                        addEdge(cells, circleVertices[i], circleVertices[j], delaunayPairs);
                     }
                 }
             }
         }
-    }   
-    
-    public class Neighbors{
-        public int[] cellLocations;
-        
-        public Neighbors(int c1, int c2) {
-            if (c1 < c2) {
-            cellLocations = new int[] {c1, c2};
-            } else {
-                cellLocations = new int[] {c2, c1};
+    }
+
+    // Edge from the lower numbered cell to the higher
+    private void addEdge(int[] cells, int v1, int v2, HashSet<Edge> delaunayPairs) {
+        delaunayPairs.add(new Edge(Math.min(cells[v1], cells[v2]), Math.max(cells[v1], cells[v2])));
+    }
+
+    private int findGroup(int[] groups, int t) {
+        while (groups[t] != t) {
+            groups[t] = groups[groups[t]];
+            t = groups[t];
+        }
+        return t;
+    }
+
+    private int newTriangle(int a, int b, int c) {
+        int t;
+        if (!freeTriangles.isEmpty()) {
+            t = freeTriangles.remove(freeTriangles.size() - 1);
+        } else {
+            if (numTriangles == removed.length) {
+                vertices = Arrays.copyOf(vertices, 2 * vertices.length);
+                neighbors = Arrays.copyOf(neighbors, 2 * neighbors.length);
+                removed = Arrays.copyOf(removed, 2 * removed.length);
+                inCavity = Arrays.copyOf(inCavity, 2 * inCavity.length);
             }
+            t = numTriangles++;
         }
+        vertices[t * 3] = a;
+        vertices[t * 3 + 1] = b;
+        vertices[t * 3 + 2] = c;
+        removed[t] = false;
+        return t;
+    }
+
+    private void setNeighbors(int t, int n0, int n1, int n2) {
+        neighbors[t * 3] = n0;
+        neighbors[t * 3 + 1] = n1;
+        neighbors[t * 3 + 2] = n2;
+    }
+
+    private boolean isGhost(int t) {
+        return vertices[t * 3] == INFINITE || vertices[t * 3 + 1] == INFINITE || vertices[t * 3 + 2] == INFINITE;
+    }
+
+    // Positive if a, b, c turn counterclockwise, negative if clockwise, 0 if collinear
+    private long orient(int a, int b, int c) {
+        return Long.signum((xs[b] - xs[a]) * (ys[c] - ys[a]) - (ys[b] - ys[a]) * (xs[c] - xs[a]));
+    }
 
-        @Override
-        public boolean equals(Object o) {
-            Neighbors other = (Neighbors) o;
-            return Arrays.equals(other.cellLocations, cellLocations);
+    // c is strictly between a and b, given the three are collinear
+    private boolean isBetween(int a, int b, int c) {
+        if (xs[a] != xs[b]) {
+            return Math.min(xs[a], xs[b]) < xs[c] && xs[c] < Math.max(xs[a], xs[b]);
         }
-        
-        @Override
-        public int hashCode() {
-            return Arrays.hashCode(cellLocations);
+        return Math.min(ys[a], ys[b]) < ys[c] && ys[c] < Math.max(ys[a], ys[b]);
+    }
+
+    // Positive if d is inside the circumcircle of counterclockwise a, b, c, negative if outside, 0 if on it.
+    // Exact, falling back to BigInteger if longs would overflow.
+    private int inCircle(int a, int b, int c, int d) {
+        long adx = xs[a] - xs[d];
+        long ady = ys[a] - ys[d];
+        long bdx = xs[b] - xs[d];
+        long bdy = ys[b] - ys[d];
+        long cdx = xs[c] - xs[d];
+        long cdy = ys[c] - ys[d];
+        try {
+            long alift = Math.addExact(Math.multiplyExact(adx, adx), Math.multiplyExact(ady, ady));
+            long blift = Math.addExact(Math.multiplyExact(bdx, bdx), Math.multiplyExact(bdy, bdy));
+            long clift = Math.addExact(Math.multiplyExact(cdx, cdx), Math.multiplyExact(cdy, cdy));
+            long bcdet = Math.subtractExact(Math.multiplyExact(bdx, cdy), Math.multiplyExact(cdx, bdy));
+            long cadet = Math.subtractExact(Math.multiplyExact(cdx, ady), Math.multiplyExact(adx, cdy));
+            long abdet = Math.subtractExact(Math.multiplyExact(adx, bdy), Math.multiplyExact(bdx, ady));
+            long det = Math.addExact(Math.addExact(Math.multiplyExact(alift, bcdet), Math.multiplyExact(blift, cadet)), Math.multiplyExact(clift, abdet));
+            return Long.signum(det);
+        } catch (ArithmeticException e) {
+            BigInteger[] diffs = new BigInteger[]{BigInteger.valueOf(adx), BigInteger.valueOf(ady), BigInteger.valueOf(bdx),
+                BigInteger.valueOf(bdy), BigInteger.valueOf(cdx), BigInteger.valueOf(cdy)};
+            BigInteger alift = diffs[0].multiply(diffs[0]).add(diffs[1].multiply(diffs[1]));
+            BigInteger blift = diffs[2].multiply(diffs[2]).add(diffs[3].multiply(diffs[3]));
+            BigInteger clift = diffs[4].multiply(diffs[4]).add(diffs[5].multiply(diffs[5]));
+            BigInteger bcdet = diffs[2].multiply(diffs[5]).subtract(diffs[4].multiply(diffs[3]));
+            BigInteger cadet = diffs[4].multiply(diffs[1]).subtract(diffs[0].multiply(diffs[5]));
+            BigInteger abdet = diffs[0].multiply(diffs[3]).subtract(diffs[2].multiply(diffs[1]));
+            return alift.multiply(bcdet).add(blift.multiply(cadet)).add(clift.multiply(abdet)).signum();
         }
     }
 }
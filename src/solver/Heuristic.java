@@ -6,8 +6,7 @@
 package solver;
 
 import dataStore.DataStorer;
-import dataStore.Edge;
-import dataStore.HeuristicEdge;
+import dataStore.HeuristicGraph;
 import dataStore.Sink;
 import dataStore.Source;
 import java.util.ArrayList;
@@ -15,8 +14,10 @@ import java.util.Arrays;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
 import java.util.PriorityQueue;
-import java.util.Set;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import static utilities.Utilities.convertIntegerArray;
 
 /**
@@ -30,12 +31,42 @@ public class Heuristic {
     private Source[] sources;
     private Sink[] sinks;
 
+    // Active sets
+    private int[] activeSources;    // srcNums of sources with remaining capacity, in order
+    private int[] activeSinks;      // snkNums of sinks with remaining capacity, in order
+
     // Graph
     private int[] graphVertices;
-    private HeuristicEdge[][] adjacencyMatrix;
-    private double[][] adjacencyCosts;
-    private HashMap<Integer, Integer> cellNumToVertexNum;
-    private HashMap<Integer, HashSet<Integer>> neighbors;
+    private HeuristicGraph graph;
+    private ThreadLocal<SearchSpace> searchSpaces;  // Dijkstra buffers, one per thread
+
+    // Incremental pair costs
+    private boolean incremental = true;
+    private Pair[][] previousPairCosts;     // Pair costs from the last call to makePairwiseCostArray
+    private HashSet<Source> changedSources;     // Sources scheduled since the last call
+    private HashSet<Sink> changedSinks;     // Sinks scheduled since the last call
+    private HashMap<Integer, EdgeState> changedEdges;     // [edgeNum] = arc states from before the first change since the last call
+
+    // Parallel pair evaluation
+    private int numThreads = 1;
+    private ForkJoinPool pool;
+
+    // Point-to-point search
+    private boolean pointToPoint = true;    // Stop each search once the sink is settled
+    private boolean aStar = false;      // Guide each search with sinkPotentials
+    private HashMap<Sink, double[]> sinkPotentials;  // [vertexNum] = lower bound on cost per ton from vertexNum to the sink
+    private boolean[] touchedEdges;     // [edgeNum] = edge has been scheduled
+
+    // One-to-many search
+    private boolean oneToMany = true;   // Find costs to all sinks sharing a source and transfer amount with one search
+
+    // Lazy greedy
+    private boolean lazy = false;   // Schedule pairs with lazyModel instead of capacityModel and priceModel
+
+    // Lower bound pruning
+    private boolean prune = true;   // Skip searches for pairs whose lower bound rules them out
+    private long numPrunedPairs;    // Pairs skipped since solve started
+    private long numSearchedPairs;  // Pairs searched since solve started
 
     public Heuristic(DataStorer data) {
         this.data = data;
@@ -44,8 +75,9 @@ public class Heuristic {
         sinks = data.getSinks();
         graphVertices = data.getGraphVertices();
 
-        cellNumToVertexNum = new HashMap<>();
-        neighbors = new HashMap<>();
+        changedSources = new HashSet<>();
+        changedSinks = new HashSet<>();
+        changedEdges = new HashMap<>();
     }
 
     // Every iteration, the algorithm will choose numPairs pairs with the lowest cost to add to the network.
@@ -62,36 +94,41 @@ public class Heuristic {
         for (Sink snk : sinks) {
             snk.setRemainingCapacity(snk.getCapacity() / data.getProjectLength());
         }
+        previousPairCosts = null;
+        activeSources = new int[sources.length];
+        for (int srcNum = 0; srcNum < sources.length; srcNum++) {
+            activeSources[srcNum] = srcNum;
+        }
+        activeSinks = new int[sinks.length];
+        for (int snkNum = 0; snkNum < sinks.length; snkNum++) {
+            activeSinks[snkNum] = snkNum;
+        }
 
         // Make directed edge graph
-        Set<Edge> originalEdges = data.getGraphEdgeCosts().keySet();
-        adjacencyMatrix = new HeuristicEdge[graphVertices.length][graphVertices.length];
-        adjacencyCosts = new double[graphVertices.length][graphVertices.length];
-
-        for (int u = 0; u < graphVertices.length; u++) {
-            cellNumToVertexNum.put(graphVertices[u], u);
-            for (int v = 0; v < graphVertices.length; v++) {
-                adjacencyCosts[u][v] = Double.MAX_VALUE;
-                if (originalEdges.contains(new Edge(graphVertices[u], graphVertices[v]))) {
-                    if (neighbors.get(u) == null) {
-                        neighbors.put(u, new HashSet<>());
-                    }
-                    neighbors.get(u).add(v);
-                    adjacencyMatrix[u][v] = new HeuristicEdge(graphVertices[u], graphVertices[v], data);
-                    adjacencyMatrix[u][v].currentHostingAmount = 0;
-                    adjacencyMatrix[u][v].currentSize = 0;
-
-                    adjacencyMatrix[v][u] = new HeuristicEdge(graphVertices[v], graphVertices[u], data);
-                    adjacencyMatrix[v][u].currentHostingAmount = 0;
-                    adjacencyMatrix[v][u].currentSize = 0;
-                }
-            }
+        graph = new HeuristicGraph(data);
+        searchSpaces = ThreadLocal.withInitial(() -> new SearchSpace(graph.getNumVertices()));
+        touchedEdges = new boolean[graph.getNumEdges()];
+        sinkPotentials = null;
+        numPrunedPairs = 0;
+        numSearchedPairs = 0;
+
+        if (numThreads > 1) {
+            pool = new ForkJoinPool(numThreads);
         }
 
-        if (modelVersion == 1) {
-            capacityModel(numPairs);
-        } else if (modelVersion == 2) {
-            priceModel(numPairs);
+        try {
+            if (lazy) {
+                lazyModel(numPairs, modelVersion);
+            } else if (modelVersion == 1) {
+                capacityModel(numPairs);
+            } else if (modelVersion == 2) {
+                priceModel(numPairs);
+            }
+        } finally {
+            if (pool != null) {
+                pool.shutdown();
+                pool = null;
+            }
         }
     }
 
@@ -101,21 +138,24 @@ public class Heuristic {
 
         while (amountCaptured < data.getTargetCaptureAmount()) {
             // Make cost array
-            Pair[][] pairCosts = makePairwiseCostArray(data.getTargetCaptureAmount() - amountCaptured);
+            Pair[][] pairCosts = makePairwiseCostArray(data.getTargetCaptureAmount() - amountCaptured, numPairs, Double.MAX_VALUE);
 
-            // TODO: Look at making this more efficient.Probably return pairCosts initially.
+            // Only pairs of active sources and sinks can be scheduled
             ArrayList<Pair> pairCostsList = new ArrayList<Pair>();
-            for (int srcNum = 0; srcNum < sources.length; srcNum++) {
-                for (int snkNum = 0; snkNum < sinks.length; snkNum++) {
+            for (int srcNum : activeSources) {
+                for (int snkNum : activeSinks) {
                     pairCostsList.add(pairCosts[srcNum][snkNum]);
-
                 }
             }
+            if (pairCostsList.isEmpty()) {
+                System.out.println("Target capture amount is not feasible. Captured " + amountCaptured + " of " + data.getTargetCaptureAmount());
+                break;
+            }
 
             pairCostsList.sort(new PairComparator());
 
-            Pair cheapest[] = new Pair[numPairs];
-            cheapest = pairCostsList.subList(0, numPairs).toArray(cheapest);
+            Pair cheapest[] = new Pair[Math.min(numPairs, pairCostsList.size())];
+            cheapest = pairCostsList.subList(0, cheapest.length).toArray(cheapest);
 
             double transferAmount = 0;
             for (int i = 0; i < cheapest.length; i++) {
@@ -129,6 +169,7 @@ public class Heuristic {
             }
             System.out.println("Captured " + amountCaptured + " of " + data.getTargetCaptureAmount());
         }
+        System.out.println("Pruned Pairs: " + numPrunedPairs + " of " + (numPrunedPairs + numSearchedPairs));
         System.out.println("Execution Time: " + (System.nanoTime() - startTime) / 1000000000 + " seconds");
     }
 
@@ -139,23 +180,22 @@ public class Heuristic {
 
         while (negativePair) {
             // Make cost array
-            Pair[][] pairCosts = makePairwiseCostArray(Double.MAX_VALUE);
+            Pair[][] pairCosts = makePairwiseCostArray(Double.MAX_VALUE, numPairs, 0);
 
-            // TODO: Look at making this more efficient. Probably return pairCosts initially.
+            // Only pairs of active sources and sinks can be scheduled
             ArrayList<Pair> pairCostsList = new ArrayList<Pair>();
-            for (int srcNum = 0; srcNum < sources.length; srcNum++) {
-                for (int snkNum = 0; snkNum < sinks.length; snkNum++) {
+            for (int srcNum : activeSources) {
+                for (int snkNum : activeSinks) {
                     pairCostsList.add(pairCosts[srcNum][snkNum]);
-
                 }
             }
 
             pairCostsList.sort(new PairComparator());
 
-            Pair cheapest[] = new Pair[numPairs];
-            cheapest = pairCostsList.subList(0, numPairs).toArray(cheapest);
-            
-            if (cheapest[0].cost >= 0) {
+            Pair cheapest[] = new Pair[Math.min(numPairs, pairCostsList.size())];
+            cheapest = pairCostsList.subList(0, cheapest.length).toArray(cheapest);
+
+            if (cheapest.length == 0 || cheapest[0].cost >= 0) {
                 negativePair = false;
             }
 
@@ -167,10 +207,145 @@ public class Heuristic {
                 }
             }
         }
+        System.out.println("Pruned Pairs: " + numPrunedPairs + " of " + (numPrunedPairs + numSearchedPairs));
+        System.out.println("Execution Time: " + (System.nanoTime() - startTime) / 1000000000 + " seconds");
+    }
+
+    // Lazy greedy (CELF) version of capacityModel and priceModel. Pairs are kept in a queue keyed by their last
+    // computed cost and only pairs at the top are re-evaluated. Like the eager models, each iteration schedules the
+    // numPairs cheapest pairs, taken from the top of the queue once their fresh costs still beat the next key.
+    // Costs can drop as pipelines are shared, so old keys are not true lower bounds and the result can differ from
+    // the eager models. Pairs with a scheduled source or sink are re-evaluated right away since their costs drop
+    // the most.
+    public void lazyModel(int numPairs, int modelVersion) {
+        long startTime = System.nanoTime();
+        double amountCaptured = 0;
+        double targetCaptureAmount = Double.MAX_VALUE;
+        if (modelVersion == 1) {
+            targetCaptureAmount = data.getTargetCaptureAmount();
+        }
+
+        HashMap<Source, Integer> sourceNums = new HashMap<>();
+        for (int srcNum = 0; srcNum < sources.length; srcNum++) {
+            sourceNums.put(sources[srcNum], srcNum);
+        }
+        HashMap<Sink, Integer> sinkNums = new HashMap<>();
+        for (int snkNum = 0; snkNum < sinks.length; snkNum++) {
+            sinkNums.put(sinks[snkNum], snkNum);
+        }
+
+        // Evaluate every pair once
+        Pair[][] pairCosts = makePairwiseCostArray(targetCaptureAmount);
+        previousPairCosts = null;
+        PriorityQueue<Pair> pairQueue = new PriorityQueue<>(new PairComparator());
+        for (int srcNum : activeSources) {
+            for (int snkNum : activeSinks) {
+                pairQueue.add(pairCosts[srcNum][snkNum]);
+            }
+        }
+
+        int round = 0;  // Number of iterations that scheduled pairs
+        int numScheduled = 0;
+        int numEvaluations = 0;
+        while (amountCaptured < targetCaptureAmount && !pairQueue.isEmpty()) {
+            // Take the numPairs cheapest fresh pairs off the queue
+            ArrayList<Pair> cheapest = new ArrayList<>();
+            while (cheapest.size() < numPairs && !pairQueue.isEmpty()) {
+                Pair top = pairQueue.poll();
+                int srcNum = sourceNums.get(top.src);
+                int snkNum = sinkNums.get(top.snk);
+
+                // Skip keys left behind by a newer evaluation, and pairs with an exhausted source or sink
+                if (top != pairCosts[srcNum][snkNum] || top.src.getRemainingCapacity() <= 0 || top.snk.getRemainingCapacity() <= 0) {
+                    continue;
+                }
+
+                if (top.round < round) {
+                    // Stale, so re-evaluate and put back
+                    double transferAmount = Math.min(Math.min(top.src.getRemainingCapacity(), top.snk.getRemainingCapacity()), targetCaptureAmount - amountCaptured);
+                    Pair pair = evaluatePair(top.src, top.snk, transferAmount);
+                    pair.round = round;
+                    pairCosts[srcNum][snkNum] = pair;
+                    pairQueue.add(pair);
+                    numEvaluations++;
+                } else {
+                    cheapest.add(top);
+                }
+            }
+
+            if (cheapest.isEmpty() || cheapest.get(0).cost == Double.MAX_VALUE || (modelVersion == 2 && cheapest.get(0).cost >= 0)) {
+                break;
+            }
+
+            // Schedule them in order, as the eager models do
+            HashSet<Integer> scheduledSources = new HashSet<>();
+            HashSet<Integer> scheduledSinks = new HashSet<>();
+            for (Pair pair : cheapest) {
+                if (amountCaptured >= targetCaptureAmount || pair.cost == Double.MAX_VALUE || (modelVersion == 2 && pair.cost >= 0)) {
+                    // Unscheduled pairs go back to be re-evaluated in a later iteration
+                    pairQueue.add(pair);
+                    continue;
+                }
+                double transferAmount = Math.min(Math.min(pair.src.getRemainingCapacity(), pair.snk.getRemainingCapacity()), targetCaptureAmount - amountCaptured);
+                amountCaptured += transferAmount;
+                schedulePair(pair.src, pair.snk, pair.path, transferAmount);
+                scheduledSources.add(sourceNums.get(pair.src));
+                scheduledSinks.add(sinkNums.get(pair.snk));
+                numScheduled++;
+            }
+            round++;
+
+            if (aStar) {
+                makeSinkPotentials();
+            }
+            changedSources.clear();
+            changedSinks.clear();
+            changedEdges.clear();
+
+            // Re-evaluate active pairs with a scheduled source or sink
+            updateActiveSets();
+            ArrayList<PairGroup> groups = new ArrayList<>();
+            ArrayList<Integer> rowSinks = new ArrayList<>();
+            ArrayList<Integer> columnSinks = new ArrayList<>();
+            for (int i : activeSinks) {
+                rowSinks.add(i);
+                if (scheduledSinks.contains(i)) {
+                    columnSinks.add(i);
+                }
+            }
+            for (int i : activeSources) {
+                if (scheduledSources.contains(i)) {
+                    addGroups(i, rowSinks, targetCaptureAmount - amountCaptured, groups);
+                }
+            }
+            if (!columnSinks.isEmpty()) {
+                for (int i : activeSources) {
+                    if (!scheduledSources.contains(i)) {
+                        addGroups(i, columnSinks, targetCaptureAmount - amountCaptured, groups);
+                    }
+                }
+            }
+            evaluateGroups(groups, pairCosts);
+            for (PairGroup group : groups) {
+                for (int groupSnkNum : group.snkNums) {
+                    Pair pair = pairCosts[group.srcNum][groupSnkNum];
+                    pair.round = round;
+                    pairQueue.add(pair);
+                    numEvaluations++;
+                }
+            }
+
+            if (modelVersion == 1) {
+                System.out.println("Captured " + amountCaptured + " of " + data.getTargetCaptureAmount());
+            }
+        }
+        System.out.println("Lazy Evaluations: " + numEvaluations + " for " + numScheduled + " pairs");
         System.out.println("Execution Time: " + (System.nanoTime() - startTime) / 1000000000 + " seconds");
     }
 
-    public void schedulePair(Source src, Sink snk, HashSet<HeuristicEdge> path, double transferAmount) {
+    public void schedulePair(Source src, Sink snk, int[] path, double transferAmount) {
+        changedSources.add(src);
+        changedSinks.add(snk);
 
         src.setRemainingCapacity(src.getRemainingCapacity() - transferAmount);
         snk.setRemainingCapacity(snk.getRemainingCapacity() - transferAmount);
@@ -178,191 +353,492 @@ public class Heuristic {
         double totalTransferAmount = snk.getCapacity() / data.getProjectLength() - snk.getRemainingCapacity();
         snk.setNumWells(getNewNumWells(snk, totalTransferAmount));
 
-        for (HeuristicEdge frontEdge : path) {
-            HeuristicEdge backEdge = adjacencyMatrix[cellNumToVertexNum.get(frontEdge.v2)][cellNumToVertexNum.get(frontEdge.v1)];
+        for (int frontArc : path) {
+            int backArc = graph.getReverse(frontArc);
+            recordEdgeChange(frontArc);
+            touchedEdges[graph.getEdgeNum(frontArc)] = true;
+            double backHostingAmount = graph.getHostingAmount(backArc);
 
             // If edge in opposite direction was hosting flow
-            if (backEdge.currentHostingAmount > 0) {
+            if (backHostingAmount > 0) {
                 // If the back edge is still needed
-                if (transferAmount < backEdge.currentHostingAmount) {
+                if (transferAmount < backHostingAmount) {
                     // Calculate the new pipeline size
-                    int newSize = getNewPipelineSize(backEdge, backEdge.currentHostingAmount - transferAmount);
+                    int newSize = getNewPipelineSize(backHostingAmount - transferAmount);
 
                     // Update pipeline size
-                    backEdge.currentSize = newSize;
+                    graph.setSize(backArc, newSize);
 
                     // Update hosting amount
-                    backEdge.currentHostingAmount -= transferAmount;
-                } else if (transferAmount > backEdge.currentHostingAmount) {    //If front edge is now needed
-                    backEdge.currentSize = 0;
-                    backEdge.currentHostingAmount = 0;
-
-                    int newSize = getNewPipelineSize(frontEdge, transferAmount - backEdge.currentHostingAmount);
-                    frontEdge.currentSize = newSize;
-                    frontEdge.currentHostingAmount = transferAmount - backEdge.currentHostingAmount;
+                    graph.setHostingAmount(backArc, backHostingAmount - transferAmount);
+                } else if (transferAmount > backHostingAmount) {    //If front edge is now needed
+                    graph.setSize(backArc, 0);
+                    graph.setHostingAmount(backArc, 0);
+
+                    int newSize = getNewPipelineSize(transferAmount);
+                    graph.setSize(frontArc, newSize);
+                    graph.setHostingAmount(frontArc, transferAmount);
                 } else {
-                    backEdge.currentSize = 0;
-                    backEdge.currentHostingAmount = 0;
+                    graph.setSize(backArc, 0);
+                    graph.setHostingAmount(backArc, 0);
                 }
             } else {
-                int newSize = getNewPipelineSize(frontEdge, transferAmount + frontEdge.currentHostingAmount);
-                frontEdge.currentSize = newSize;
-                frontEdge.currentHostingAmount += transferAmount;
+                double frontHostingAmount = graph.getHostingAmount(frontArc);
+                int newSize = getNewPipelineSize(transferAmount + frontHostingAmount);
+                graph.setSize(frontArc, newSize);
+                graph.setHostingAmount(frontArc, frontHostingAmount + transferAmount);
+            }
+        }
+    }
+
+    // Drop sources and sinks without remaining capacity from the active sets
+    private void updateActiveSets() {
+        int numActiveSources = 0;
+        for (int srcNum : activeSources) {
+            if (sources[srcNum].getRemainingCapacity() > 0) {
+                activeSources[numActiveSources++] = srcNum;
+            }
+        }
+        if (numActiveSources < activeSources.length) {
+            activeSources = Arrays.copyOf(activeSources, numActiveSources);
+        }
+
+        int numActiveSinks = 0;
+        for (int snkNum : activeSinks) {
+            if (sinks[snkNum].getRemainingCapacity() > 0) {
+                activeSinks[numActiveSinks++] = snkNum;
             }
         }
+        if (numActiveSinks < activeSinks.length) {
+            activeSinks = Arrays.copyOf(activeSinks, numActiveSinks);
+        }
     }
 
     public Pair[][] makePairwiseCostArray(double remainingCaptureAmount) {
+        return makePairwiseCostArray(remainingCaptureAmount, sources.length * sinks.length, Double.MAX_VALUE);
+    }
+
+    // Only the numPairs cheapest pairs, and only pairs cheaper than costLimit, need exact costs. In prune mode
+    // other pairs are skipped when their lower bound rules them out, and get a cost of Double.MAX_VALUE.
+    public Pair[][] makePairwiseCostArray(double remainingCaptureAmount, int numPairs, double costLimit) {
+        updateActiveSets();
+
+        // Pairs of inactive sources and sinks are left null
         Pair[][] pairCosts = new Pair[sources.length][sinks.length];
-        for (int srcNum = 0; srcNum < sources.length; srcNum++) {
-            for (int snkNum = 0; snkNum < sinks.length; snkNum++) {
+        ArrayList<Double> knownCosts = new ArrayList<>();
+        ArrayList<int[]> pairsToEvaluate = new ArrayList<>();   // {srcNum, snkNum}
+        for (int srcNum : activeSources) {
+            for (int snkNum : activeSinks) {
                 Source src = sources[srcNum];
                 Sink snk = sinks[snkNum];
 
                 double transferAmount = Math.min(Math.min(src.getRemainingCapacity(), snk.getRemainingCapacity()), remainingCaptureAmount);
-                double cost = Double.MAX_VALUE;
-                HashSet<HeuristicEdge> path = null;
-
-                if (transferAmount > 0) {
-                    cost = 0;
-                    // Incurr opening cost if source not yet used
-                    if (src.getRemainingCapacity() == src.getProductionRate()) {
-                        cost += src.getOpeningCost(data.getCrf());
-                    }
-                    cost += transferAmount * src.getCaptureCost();
-
-                    // Incurr opening cost if sink not yet used
-                    if (snk.getRemainingCapacity() == snk.getCapacity() / data.getProjectLength()) {
-                        cost += snk.getOpeningCost(data.getCrf());
-                    }
-                    // Determine cost of additional wells needed
-                    int numNewWells = getNewNumWells(snk, transferAmount) - snk.getNumWells();
-                    cost += snk.getWellOpeningCost(data.getCrf()) * numNewWells;
-                    cost += transferAmount * snk.getInjectionCost();
 
-                    // Assign costs to graph
-                    setGraphCosts(src, snk, transferAmount);
+                // Reuse the last cost if nothing it depends on has changed
+                if (incremental && previousPairCosts != null && isUnchanged(previousPairCosts[srcNum][snkNum], transferAmount)) {
+                    pairCosts[srcNum][snkNum] = previousPairCosts[srcNum][snkNum];
+                    knownCosts.add(pairCosts[srcNum][snkNum].cost);
+                } else {
+                    pairsToEvaluate.add(new int[]{srcNum, snkNum});
+                }
+            }
+        }
 
-                    // Find shortest path between src and snk
-                    Object[] data = dijkstra(src, snk);
-                    path = (HashSet<HeuristicEdge>) data[0];
-                    double pathCost = (double) data[1];
+        boolean usePruning = prune && (numPairs < activeSources.length * activeSinks.length || costLimit < Double.MAX_VALUE);
 
-                    cost += pathCost;
+        // Update A* and pruning bounds if edges changed
+        if ((aStar || usePruning) && (sinkPotentials == null || !changedEdges.isEmpty())) {
+            makeSinkPotentials();
+        }
 
-                    // Cost per ton of CO2
-                    cost /= transferAmount;
+        if (usePruning) {
+            // Order pairs by lower bound, dropping those that cannot beat costLimit
+            HashMap<int[], Double> lowerBounds = new HashMap<>();
+            ArrayList<int[]> candidates = new ArrayList<>();
+            for (int[] pair : pairsToEvaluate) {
+                double lowerBound = getLowerBound(pair[0], pair[1], remainingCaptureAmount);
+                if (lowerBound >= costLimit) {
+                    prunePair(pair, remainingCaptureAmount, pairCosts);
+                } else {
+                    lowerBounds.put(pair, lowerBound);
+                    candidates.add(pair);
                 }
+            }
+            candidates.sort((pair1, pair2) -> Double.compare(lowerBounds.get(pair1), lowerBounds.get(pair2)));
+
+            // Evaluate the pairs with the lowest bounds to find a cost to beat
+            int numFirst = Math.min(numPairs, candidates.size());
+            evaluatePairs(candidates.subList(0, numFirst), remainingCaptureAmount, pairCosts);
+            for (int[] pair : candidates.subList(0, numFirst)) {
+                knownCosts.add(pairCosts[pair[0]][pair[1]].cost);
+            }
+            double threshold = Double.MAX_VALUE;
+            if (knownCosts.size() >= numPairs) {
+                knownCosts.sort(null);
+                threshold = knownCosts.get(numPairs - 1);
+            }
 
-                pairCosts[srcNum][snkNum] = new Pair(src, snk, path, cost);
+            // Evaluate the rest only if they could still be among the numPairs cheapest
+            ArrayList<int[]> remaining = new ArrayList<>();
+            for (int[] pair : candidates.subList(numFirst, candidates.size())) {
+                if (lowerBounds.get(pair) > threshold) {
+                    prunePair(pair, remainingCaptureAmount, pairCosts);
+                } else {
+                    remaining.add(pair);
+                }
             }
+            evaluatePairs(remaining, remainingCaptureAmount, pairCosts);
+        } else {
+            evaluatePairs(pairsToEvaluate, remainingCaptureAmount, pairCosts);
         }
+
+        // Start tracking changes for the next call
+        if (incremental) {
+            previousPairCosts = pairCosts;
+        }
+        changedSources.clear();
+        changedSinks.clear();
+        changedEdges.clear();
+
         return pairCosts;
     }
 
-    // For a given src/snk pair, set the cost of the edgs to carry transferAmount of CO2
-    public void setGraphCosts(Source src, Sink snk, double transferAmount) {
-        for (int u = 0; u < graphVertices.length; u++) {
-            for (int v = 0; v < graphVertices.length; v++) {
-                HeuristicEdge frontEdge = adjacencyMatrix[u][v];
-                HeuristicEdge backEdge = adjacencyMatrix[v][u];
-                double edgeCost = 0;
-
-                if (frontEdge != null) {
-                    // If edge in opposite direction is hosting flow
-                    if (backEdge.currentHostingAmount > 0) {
-                        // Remove back edge (because it will need to change)
-                        edgeCost -= backEdge.buildCost[backEdge.currentSize];
-                        edgeCost -= backEdge.currentHostingAmount * backEdge.transportCost[backEdge.currentSize];
-
-                        // If the back edge is still needed
-                        if (transferAmount < backEdge.currentHostingAmount) {
-                            // Calculate the new pipeline size
-                            int newSize = getNewPipelineSize(backEdge, backEdge.currentHostingAmount - transferAmount);
-
-                            // Factor in build costs
-                            edgeCost += backEdge.buildCost[newSize];
-
-                            // Factor in utilization costs
-                            edgeCost += backEdge.transportCost[newSize] * (backEdge.currentHostingAmount - transferAmount);
-                        } else if (transferAmount > backEdge.currentHostingAmount) {    //If front edge is now needed
-                            int newSize = getNewPipelineSize(frontEdge, transferAmount - backEdge.currentHostingAmount);
-                            edgeCost += frontEdge.buildCost[newSize];
-                            edgeCost += frontEdge.transportCost[newSize] * (transferAmount - backEdge.currentHostingAmount);
-                        }
-                    } else {
-                        int newSize = getNewPipelineSize(frontEdge, transferAmount + frontEdge.currentHostingAmount);
-                        edgeCost += frontEdge.buildCost[newSize] - frontEdge.buildCost[frontEdge.currentSize];
-                        edgeCost += frontEdge.transportCost[newSize] * (transferAmount + frontEdge.currentHostingAmount) - frontEdge.transportCost[frontEdge.currentSize] * (frontEdge.currentHostingAmount);
-                    }
-                    //frontEdge.cost = edgeCost;
-                    frontEdge.cost = Math.max(edgeCost, 0); //NEED TO THINK ABOUT THIS!
-                    adjacencyCosts[u][v] = Math.max(edgeCost, 0);
+    // Evaluate each {srcNum, snkNum} of pairs into pairCosts
+    private void evaluatePairs(List<int[]> pairs, double remainingCaptureAmount, Pair[][] pairCosts) {
+        ArrayList<ArrayList<Integer>> sinksBySource = new ArrayList<>();
+        for (int srcNum = 0; srcNum < sources.length; srcNum++) {
+            sinksBySource.add(new ArrayList<>());
+        }
+        for (int[] pair : pairs) {
+            sinksBySource.get(pair[0]).add(pair[1]);
+        }
+
+        ArrayList<PairGroup> groups = new ArrayList<>();
+        for (int srcNum = 0; srcNum < sources.length; srcNum++) {
+            addGroups(srcNum, sinksBySource.get(srcNum), remainingCaptureAmount, groups);
+        }
+        evaluateGroups(groups, pairCosts);
+        numSearchedPairs += pairs.size();
+    }
+
+    // Give a pair that was ruled out a cost it can never be chosen at
+    private void prunePair(int[] pair, double remainingCaptureAmount, Pair[][] pairCosts) {
+        Source src = sources[pair[0]];
+        Sink snk = sinks[pair[1]];
+        double transferAmount = Math.min(Math.min(src.getRemainingCapacity(), snk.getRemainingCapacity()), remainingCaptureAmount);
+        pairCosts[pair[0]][pair[1]] = new Pair(src, snk, null, Double.MAX_VALUE, transferAmount);
+        pairCosts[pair[0]][pair[1]].pruned = true;
+        numPrunedPairs++;
+    }
+
+    // Lower bound on the cost per ton of a pair. Node costs are exact, and the path costs at least the transfer amount
+    // times the cheapest transport cost on each edge not yet scheduled. The path part is loosened slightly to absorb
+    // rounding in the searches.
+    private double getLowerBound(int srcNum, int snkNum, double remainingCaptureAmount) {
+        Source src = sources[srcNum];
+        Sink snk = sinks[snkNum];
+        double transferAmount = Math.min(Math.min(src.getRemainingCapacity(), snk.getRemainingCapacity()), remainingCaptureAmount);
+        if (transferAmount <= 0) {
+            return Double.MAX_VALUE;
+        }
+        double pathLowerBound = transferAmount * sinkPotentials.get(snk)[graph.getVertexNum(src.getCellNum())];
+        return (getNodeCost(src, snk, transferAmount) + pathLowerBound * (1 - 1e-9)) / transferAmount;
+    }
+
+    // Add groups for pairs of srcNum with each of snkNums. In oneToMany mode sinks sharing a transfer amount share a group.
+    private void addGroups(int srcNum, ArrayList<Integer> snkNums, double remainingCaptureAmount, ArrayList<PairGroup> groups) {
+        Source src = sources[srcNum];
+        HashMap<Double, ArrayList<Integer>> sinksByTransferAmount = new HashMap<>();
+        for (int snkNum : snkNums) {
+            Sink snk = sinks[snkNum];
+            double transferAmount = Math.min(Math.min(src.getRemainingCapacity(), snk.getRemainingCapacity()), remainingCaptureAmount);
+            if (oneToMany) {
+                if (!sinksByTransferAmount.containsKey(transferAmount)) {
+                    sinksByTransferAmount.put(transferAmount, new ArrayList<>());
                 }
+                sinksByTransferAmount.get(transferAmount).add(snkNum);
+            } else {
+                groups.add(new PairGroup(srcNum, transferAmount, new int[]{snkNum}));
+            }
+        }
+        for (double transferAmount : sinksByTransferAmount.keySet()) {
+            groups.add(new PairGroup(srcNum, transferAmount, convertIntegerArray(sinksByTransferAmount.get(transferAmount).toArray(new Integer[0]))));
+        }
+    }
+
+    // Evaluate groups into pairCosts, in parallel if there is a pool
+    private void evaluateGroups(ArrayList<PairGroup> groups, Pair[][] pairCosts) {
+        PairGroup[] groupArray = groups.toArray(new PairGroup[0]);
+        if (pool != null) {
+            pool.invoke(new PairTask(pairCosts, groupArray, 0, groupArray.length));
+        } else {
+            for (PairGroup group : groupArray) {
+                evaluateGroup(group, pairCosts);
+            }
+        }
+    }
+
+    // Evaluate every pair in group with one search, and store them in pairCosts
+    private void evaluateGroup(PairGroup group, Pair[][] pairCosts) {
+        Source src = sources[group.srcNum];
+        if (group.snkNums.length == 1 || group.transferAmount <= 0) {
+            for (int snkNum : group.snkNums) {
+                pairCosts[group.srcNum][snkNum] = evaluatePair(src, sinks[snkNum], group.transferAmount);
+            }
+        } else {
+            Sink[] snks = new Sink[group.snkNums.length];
+            for (int i = 0; i < snks.length; i++) {
+                snks[i] = sinks[group.snkNums[i]];
+            }
+            Object[] data = dijkstra(src, snks, group.transferAmount);
+            int[][] paths = (int[][]) data[0];
+            double[] pathCosts = (double[]) data[1];
+            for (int i = 0; i < snks.length; i++) {
+                pairCosts[group.srcNum][group.snkNums[i]] = makePair(src, snks[i], group.transferAmount, paths[i], pathCosts[i]);
+            }
+        }
+    }
+
+    // Determine the cost per ton of CO2 of sending transferAmount from src to snk
+    public Pair evaluatePair(Source src, Sink snk, double transferAmount) {
+        if (transferAmount > 0) {
+            // Find shortest path between src and snk with edges costed to carry transferAmount
+            Object[] data = dijkstra(src, snk, transferAmount);
+            return makePair(src, snk, transferAmount, (int[]) data[0], (double) data[1]);
+        }
+        return new Pair(src, snk, null, Double.MAX_VALUE, transferAmount);
+    }
+
+    // Add source and sink costs to the cost of path, and make the pair
+    private Pair makePair(Source src, Sink snk, double transferAmount, int[] path, double pathCost) {
+        double cost = getNodeCost(src, snk, transferAmount);
+        cost += pathCost;
+
+        // Cost per ton of CO2
+        cost /= transferAmount;
+
+        return new Pair(src, snk, path, cost, transferAmount);
+    }
+
+    // Cost of opening, capture, wells, and injection for sending transferAmount from src to snk
+    private double getNodeCost(Source src, Sink snk, double transferAmount) {
+        double cost = 0;
+        // Incurr opening cost if source not yet used
+        if (src.getRemainingCapacity() == src.getProductionRate()) {
+            cost += src.getOpeningCost(data.getCrf());
+        }
+        cost += transferAmount * src.getCaptureCost();
+
+        // Incurr opening cost if sink not yet used
+        if (snk.getRemainingCapacity() == snk.getCapacity() / data.getProjectLength()) {
+            cost += snk.getOpeningCost(data.getCrf());
+        }
+        // Determine cost of additional wells needed
+        int numNewWells = getNewNumWells(snk, transferAmount) - snk.getNumWells();
+        cost += snk.getWellOpeningCost(data.getCrf()) * numNewWells;
+        cost += transferAmount * snk.getInjectionCost();
+        return cost;
+    }
+
+    // A pair's cost can only have moved if its source, sink, or transfer amount changed, if an edge got cheaper
+    // for its transfer amount, or if an edge on its path got more expensive.
+    private boolean isUnchanged(Pair pair, double transferAmount) {
+        if (pair.pruned || pair.transferAmount != transferAmount || changedSources.contains(pair.src) || changedSinks.contains(pair.snk)) {
+            return false;
+        }
+        if (transferAmount <= 0) {
+            return true;
+        }
+
+        for (EdgeState state : changedEdges.values()) {
+            // Edge in forward direction
+            int arc = state.arc;
+            int reverseArc = graph.getReverse(arc);
+            double oldCost = getEdgeCost(arc, state.arcHostingAmount, state.arcSize, state.reverseHostingAmount, state.reverseSize, transferAmount);
+            double newCost = getEdgeCost(arc, graph.getHostingAmount(arc), graph.getSize(arc), graph.getHostingAmount(reverseArc), graph.getSize(reverseArc), transferAmount);
+            if (newCost < oldCost || (newCost > oldCost && pathContains(pair.path, arc))) {
+                return false;
+            }
+
+            // Edge in reverse direction
+            oldCost = getEdgeCost(reverseArc, state.reverseHostingAmount, state.reverseSize, state.arcHostingAmount, state.arcSize, transferAmount);
+            newCost = getEdgeCost(reverseArc, graph.getHostingAmount(reverseArc), graph.getSize(reverseArc), graph.getHostingAmount(arc), graph.getSize(arc), transferAmount);
+            if (newCost < oldCost || (newCost > oldCost && pathContains(pair.path, reverseArc))) {
+                return false;
             }
         }
+        return true;
+    }
+
+    private boolean pathContains(int[] path, int arc) {
+        for (int pathArc : path) {
+            if (pathArc == arc) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    // Remember the state of an edge's arcs before its first change since the last call to makePairwiseCostArray
+    private void recordEdgeChange(int arc) {
+        int edgeNum = graph.getEdgeNum(arc);
+        if (!changedEdges.containsKey(edgeNum)) {
+            changedEdges.put(edgeNum, new EdgeState(arc));
+        }
     }
 
-    public int getNewPipelineSize(HeuristicEdge edge, double volume) {
-        double[] capacities = edge.capacities;
-        int size = 0;
-        while (volume > capacities[size]) {
-            size++;
+    // Cost for frontArc to carry transferAmount of CO2 given the hosting amounts and sizes of it and its back arc
+    public double getEdgeCost(int frontArc, double frontHostingAmount, int frontSize, double backHostingAmount, int backSize, double transferAmount) {
+        double edgeCost = 0;
+
+        // If edge in opposite direction is hosting flow
+        if (backHostingAmount > 0) {
+            // Remove back edge (because it will need to change)
+            edgeCost -= graph.getBuildCost(frontArc, backSize);
+            edgeCost -= backHostingAmount * graph.getTransportCost(frontArc, backSize);
+
+            // If the back edge is still needed
+            if (transferAmount < backHostingAmount) {
+                // Calculate the new pipeline size
+                int newSize = getNewPipelineSize(backHostingAmount - transferAmount);
+
+                // Factor in build costs
+                edgeCost += graph.getBuildCost(frontArc, newSize);
+
+                // Factor in utilization costs
+                edgeCost += graph.getTransportCost(frontArc, newSize) * (backHostingAmount - transferAmount);
+            } else if (transferAmount > backHostingAmount) {    //If front edge is now needed
+                int newSize = getNewPipelineSize(transferAmount - backHostingAmount);
+                edgeCost += graph.getBuildCost(frontArc, newSize);
+                edgeCost += graph.getTransportCost(frontArc, newSize) * (transferAmount - backHostingAmount);
+            }
+        } else {
+            int newSize = getNewPipelineSize(transferAmount + frontHostingAmount);
+            edgeCost += graph.getBuildCost(frontArc, newSize) - graph.getBuildCost(frontArc, frontSize);
+            edgeCost += graph.getTransportCost(frontArc, newSize) * (transferAmount + frontHostingAmount) - graph.getTransportCost(frontArc, frontSize) * (frontHostingAmount);
         }
-        return size;
+        //return edgeCost;
+        return Math.max(edgeCost, 0); //NEED TO THINK ABOUT THIS!
+    }
+
+    public int getNewPipelineSize(double volume) {
+        return graph.getPipelineSize(volume);
     }
 
     public int getNewNumWells(Sink snk, double volume) {
         return (int) Math.ceil(volume / snk.getWellCapacity());
     }
 
-    // Dijkstra to run on graph edges
-    public Object[] dijkstra(Source src, Sink snk) {
-        int srcVertexNum = cellNumToVertexNum.get(src.getCellNum());
-        int snkVertexNum = cellNumToVertexNum.get(snk.getCellNum());
+    // For each sink, find a lower bound on the cost per ton of CO2 from every vertex to the sink. Untouched edges carry
+    // CO2 for at least their cheapest transport cost per ton; edges that have been scheduled may cost nothing.
+    private void makeSinkPotentials() {
+        sinkPotentials = new HashMap<>();
+        int numNodes = graph.getNumVertices();
+        IndexedMinHeap pQueue = searchSpaces.get().pQueue;
+        for (Sink snk : sinks) {
+            double[] potentials = new double[numNodes];
+            Arrays.fill(potentials, Double.MAX_VALUE);
+
+            int snkVertexNum = graph.getVertexNum(snk.getCellNum());
+            potentials[snkVertexNum] = 0;
+            pQueue.insertOrDecrease(snkVertexNum, 0);
+            while (!pQueue.isEmpty()) {
+                int u = pQueue.poll();
+                for (int arc = graph.getFirstArc(u); arc < graph.getLastArc(u); arc++) {
+                    int neighbor = graph.getHead(arc);
+                    double edgeCost = touchedEdges[graph.getEdgeNum(arc)] ? 0 : graph.getMinTransportCost(arc);
+                    double altDistance = potentials[u] + edgeCost;
+                    if (altDistance < potentials[neighbor]) {
+                        potentials[neighbor] = altDistance;
+                        pQueue.insertOrDecrease(neighbor, altDistance);
+                    }
+                }
+            }
+            sinkPotentials.put(snk, potentials);
+        }
+    }
 
-        int numNodes = graphVertices.length;
-        PriorityQueue<Heuristic.Data> pQueue = new PriorityQueue<>(numNodes);
-        double[] costs = new double[numNodes];
-        int[] previous = new int[numNodes];
-        Heuristic.Data[] map = new Heuristic.Data[numNodes];
+    // Dijkstra to run on graph edges. Edge costs to carry transferAmount are computed as edges are relaxed.
+    // In pointToPoint mode the search stops once snk is settled, and in aStar mode it is guided by sinkPotentials.
+    public Object[] dijkstra(Source src, Sink snk, double transferAmount) {
+        Object[] data = dijkstra(src, new Sink[]{snk}, transferAmount);
+        return new Object[]{((int[][]) data[0])[0], ((double[]) data[1])[0]};
+    }
 
-        for (int vertex = 0; vertex < numNodes; vertex++) {
-            costs[vertex] = Double.MAX_VALUE;
-            previous[vertex] = -1;
-            map[vertex] = new Heuristic.Data(vertex, costs[vertex]);
+    // One-to-many Dijkstra from src to each of snks, returning a path and path cost for each sink.
+    // In pointToPoint mode the search stops once every sink is settled.
+    public Object[] dijkstra(Source src, Sink[] snks, double transferAmount) {
+        int srcVertexNum = graph.getVertexNum(src.getCellNum());
+
+        SearchSpace space = searchSpaces.get();
+        IndexedMinHeap pQueue = space.pQueue;
+        double[] distances = space.distances;
+        int[] previousArc = space.previousArc;
+        boolean[] isTarget = space.isTarget;
+        Arrays.fill(distances, Double.MAX_VALUE);
+        Arrays.fill(previousArc, -1);
+
+        // Mark sink vertices
+        int numTargets = 0;
+        for (Sink snk : snks) {
+            int snkVertexNum = graph.getVertexNum(snk.getCellNum());
+            if (!isTarget[snkVertexNum]) {
+                isTarget[snkVertexNum] = true;
+                numTargets++;
+            }
         }
 
-        costs[srcVertexNum] = 0;
-        map[srcVertexNum].distance = 0;
-        pQueue.add(map[srcVertexNum]);
+        double[] potentials = aStar && snks.length == 1 ? sinkPotentials.get(snks[0]) : null;
+
+        distances[srcVertexNum] = 0;
+        pQueue.insertOrDecrease(srcVertexNum, 0);
 
         while (!pQueue.isEmpty()) {
-            Heuristic.Data u = pQueue.poll();
-            for (int neighbor : neighbors.get(u.vertexNum)) {
-                if (adjacencyMatrix[u.vertexNum][neighbor] != null) {
-                    //double altDistance = costs[u.vertexNum] + adjacencyMatrix[u.vertexNum][neighbor].cost;
-                    double altDistance = costs[u.vertexNum] + adjacencyCosts[u.vertexNum][neighbor];
-                    if (altDistance < costs[neighbor]) {
-                        costs[neighbor] = altDistance;
-                        previous[neighbor] = u.vertexNum;
-
-                        map[neighbor].distance = altDistance;
-                        pQueue.add(map[neighbor]);
+            int u = pQueue.poll();
+            if (isTarget[u]) {
+                numTargets--;
+                if ((pointToPoint || potentials != null) && numTargets == 0) {
+                    pQueue.clear();
+                    break;
+                }
+            }
+            for (int arc = graph.getFirstArc(u); arc < graph.getLastArc(u); arc++) {
+                int neighbor = graph.getHead(arc);
+                int reverseArc = graph.getReverse(arc);
+                double edgeCost = getEdgeCost(arc, graph.getHostingAmount(arc), graph.getSize(arc), graph.getHostingAmount(reverseArc), graph.getSize(reverseArc), transferAmount);
+                double altDistance = distances[u] + edgeCost;
+                if (altDistance < distances[neighbor]) {
+                    distances[neighbor] = altDistance;
+                    previousArc[neighbor] = arc;
+                    if (potentials != null) {
+                        pQueue.insertOrDecrease(neighbor, altDistance + transferAmount * potentials[neighbor]);
+                    } else {
+                        pQueue.insertOrDecrease(neighbor, altDistance);
                     }
                 }
             }
         }
 
-        HashSet<HeuristicEdge> path = new HashSet<>();
-        int node = snkVertexNum;
-        while (node != srcVertexNum) {
-            int previousNode = previous[node];
-            path.add(adjacencyMatrix[previousNode][node]);
-            node = previousNode;
+        // Arcs from src to each snk
+        int[][] paths = new int[snks.length][];
+        double[] pathCosts = new double[snks.length];
+        for (int i = 0; i < snks.length; i++) {
+            int snkVertexNum = graph.getVertexNum(snks[i].getCellNum());
+            isTarget[snkVertexNum] = false;
+
+            int pathLength = 0;
+            for (int node = snkVertexNum; node != srcVertexNum; node = graph.getTail(previousArc[node])) {
+                pathLength++;
+            }
+            int[] path = new int[pathLength];
+            for (int node = snkVertexNum; node != srcVertexNum; node = graph.getTail(previousArc[node])) {
+                path[--pathLength] = previousArc[node];
+            }
+            paths[i] = path;
+            pathCosts[i] = distances[snkVertexNum];
         }
 
-        return new Object[]{path, costs[snkVertexNum]};
+        return new Object[]{paths, pathCosts};
     }
 
     public Source[] getSources() {
@@ -377,36 +853,103 @@ public class Heuristic {
         return graphVertices;
     }
 
-    public HeuristicEdge[][] getAdjacencyMatrix() {
-        return adjacencyMatrix;
+    public HeuristicGraph getGraph() {
+        return graph;
+    }
+
+    public void setIncremental(boolean incremental) {
+        this.incremental = incremental;
+    }
+
+    public void setPointToPoint(boolean pointToPoint) {
+        this.pointToPoint = pointToPoint;
     }
 
-    public HashMap<Integer, Integer> getCellVertexMap() {
-        return cellNumToVertexNum;
+    public void setAStar(boolean aStar) {
+        this.aStar = aStar;
     }
 
-    private class Data implements Comparable<Data> {
+    public void setOneToMany(boolean oneToMany) {
+        this.oneToMany = oneToMany;
+    }
+
+    public void setLazy(boolean lazy) {
+        this.lazy = lazy;
+    }
+
+    public void setPrune(boolean prune) {
+        this.prune = prune;
+    }
+
+    public long getNumPrunedPairs() {
+        return numPrunedPairs;
+    }
+
+    public long getNumSearchedPairs() {
+        return numSearchedPairs;
+    }
+
+    // Number of worker threads used to evaluate pairs. 1 evaluates them sequentially.
+    public void setNumThreads(int numThreads) {
+        this.numThreads = Math.max(numThreads, 1);
+    }
+
+    // Per-thread buffers reused by every dijkstra call on that thread
+    private class SearchSpace {
 
-        public int vertexNum;
-        public double distance;
+        public IndexedMinHeap pQueue;
+        public double[] distances;
+        public int[] previousArc;
+        public boolean[] isTarget;
 
-        public Data(int cellNum, double distance) {
-            this.vertexNum = cellNum;
-            this.distance = distance;
+        public SearchSpace(int numNodes) {
+            pQueue = new IndexedMinHeap(numNodes);
+            distances = new double[numNodes];
+            previousArc = new int[numNodes];
+            isTarget = new boolean[numNodes];
         }
+    }
 
-        @Override
-        public int compareTo(Data other) {
-            return Double.valueOf(distance).compareTo(other.distance);
+    // Evaluates a range of groups, splitting it across the pool.
+    private class PairTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
+
+        private Pair[][] pairCosts;
+        private PairGroup[] groups;
+        private int start;
+        private int end;
+
+        public PairTask(Pair[][] pairCosts, PairGroup[] groups, int start, int end) {
+            this.pairCosts = pairCosts;
+            this.groups = groups;
+            this.start = start;
+            this.end = end;
         }
 
         @Override
-        public int hashCode() {
-            return vertexNum;
+        protected void compute() {
+            if (end - start > 1) {
+                int middle = (start + end) / 2;
+                invokeAll(new PairTask(pairCosts, groups, start, middle),
+                        new PairTask(pairCosts, groups, middle, end));
+            } else if (end - start == 1) {
+                evaluateGroup(groups[start], pairCosts);
+            }
         }
+    }
+
+    // Pairs of one source with sinks that all share a transfer amount
+    private class PairGroup {
+
+        public int srcNum;
+        public double transferAmount;
+        public int[] snkNums;
 
-        public boolean equals(Data other) {
-            return distance == other.distance;
+        public PairGroup(int srcNum, double transferAmount, int[] snkNums) {
+            this.srcNum = srcNum;
+            this.transferAmount = transferAmount;
+            this.snkNums = snkNums;
         }
     }
 
@@ -420,16 +963,39 @@ public class Heuristic {
 
     private class Pair {
 
-        public HashSet<HeuristicEdge> path;
+        public int[] path;      // Arcs from src to snk
         public double cost;
         public Source src;
         public Sink snk;
+        public double transferAmount;
+        public int round;       // Pairs scheduled before this pair was evaluated, used by lazyModel
+        public boolean pruned;  // Cost was not computed
 
-        public Pair(Source src, Sink snk, HashSet<HeuristicEdge> path, double cost) {
+        public Pair(Source src, Sink snk, int[] path, double cost, double transferAmount) {
             this.src = src;
             this.snk = snk;
             this.path = path;
             this.cost = cost;
+            this.transferAmount = transferAmount;
+        }
+    }
+
+    // State of an arc and its reverse arc at some point in the past
+    private class EdgeState {
+
+        public int arc;
+        public double arcHostingAmount;
+        public double reverseHostingAmount;
+        public int arcSize;
+        public int reverseSize;
+
+        public EdgeState(int arc) {
+            this.arc = arc;
+            int reverseArc = graph.getReverse(arc);
+            arcHostingAmount = graph.getHostingAmount(arc);
+            reverseHostingAmount = graph.getHostingAmount(reverseArc);
+            arcSize = graph.getSize(arc);
+            reverseSize = graph.getSize(reverseArc);
         }
     }
 }
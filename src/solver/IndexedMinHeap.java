@@ -0,0 +1,129 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * Binary min heap of int ids in [0, capacity) keyed by doubles, with decrease-key.
+ * Meant to be allocated once and reused across searches.
+ *
+ * @author yaw
+ */
+public class IndexedMinHeap implements IndexedMinQueue {
+
+    private int[] heap;     // [heapIndex] = id
+    private int[] positions;    // [id] = heapIndex, -1 if not in heap
+    private double[] keys;  // [id] = key
+    private int size;
+
+    public IndexedMinHeap(int capacity) {
+        heap = new int[capacity];
+        positions = new int[capacity];
+        keys = new double[capacity];
+        Arrays.fill(positions, -1);
+    }
+
+    @Override
+    public int capacity() {
+        return positions.length;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return positions[id] >= 0;
+    }
+
+    @Override
+    public double getKey(int id) {
+        return keys[id];
+    }
+
+    @Override
+    public double peekKey() {
+        return keys[heap[0]];
+    }
+
+    // Add id with key, or lower the key of id if it is already in the heap.
+    @Override
+    public void insertOrDecrease(int id, double key) {
+        if (positions[id] < 0) {
+            heap[size] = id;
+            positions[id] = size;
+            keys[id] = key;
+            siftUp(size++);
+        } else if (key < keys[id]) {
+            keys[id] = key;
+            siftUp(positions[id]);
+        }
+    }
+
+    // Remove and return the id with the smallest key.
+    @Override
+    public int poll() {
+        int id = heap[0];
+        positions[id] = -1;
+        size--;
+        if (size > 0) {
+            heap[0] = heap[size];
+            positions[heap[0]] = 0;
+            siftDown(0);
+        }
+        return id;
+    }
+
+    // Empty the heap. Only touches the ids still in it.
+    @Override
+    public void clear() {
+        for (int i = 0; i < size; i++) {
+            positions[heap[i]] = -1;
+        }
+        size = 0;
+    }
+
+    private void siftUp(int index) {
+        int id = heap[index];
+        double key = keys[id];
+        while (index > 0) {
+            int parent = (index - 1) >>> 1;
+            int parentId = heap[parent];
+            if (key >= keys[parentId]) {
+                break;
+            }
+            heap[index] = parentId;
+            positions[parentId] = index;
+            index = parent;
+        }
+        heap[index] = id;
+        positions[id] = index;
+    }
+
+    private void siftDown(int index) {
+        int id = heap[index];
+        double key = keys[id];
+        int half = size >>> 1;
+        while (index < half) {
+            int child = 2 * index + 1;
+            int right = child + 1;
+            if (right < size && keys[heap[right]] < keys[heap[child]]) {
+                child = right;
+            }
+            if (key <= keys[heap[child]]) {
+                break;
+            }
+            heap[index] = heap[child];
+            positions[heap[child]] = index;
+            index = child;
+        }
+        heap[index] = id;
+        positions[id] = index;
+    }
+}
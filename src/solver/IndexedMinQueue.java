@@ -0,0 +1,31 @@
+package solver;
+
+/**
+ * Priority queue of int ids in [0, capacity) keyed by doubles, with decrease-key.
+ * Shared by the search engines of Solver.dijkstra.
+ *
+ * @author yaw
+ */
+public interface IndexedMinQueue {
+
+    public int capacity();
+
+    public int size();
+
+    public boolean isEmpty();
+
+    public boolean contains(int id);
+
+    public double getKey(int id);
+
+    public double peekKey();
+
+    // Add id with key, or lower the key of id if it is already in the queue.
+    public void insertOrDecrease(int id, double key);
+
+    // Remove and return the id with the smallest key.
+    public int poll();
+
+    // Empty the queue. Only touches the ids still in it.
+    public void clear();
+}
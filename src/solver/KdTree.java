@@ -0,0 +1,158 @@
+package solver;
+
+import dataStore.DataStorer;
+import java.util.Arrays;
+import java.util.function.IntPredicate;
+
+/**
+ * 2-d tree over cells at their column and row, for nearest neighbor and ball queries.
+ * Repeated cells are kept once. Distances are squared and exact.
+ *
+ * @author yaw
+ */
+public class KdTree {
+
+    private int[] cells;    // [pointNum] = cell
+    private long[] xs;
+    private long[] ys;
+    private int[] tree;     // Point nums. Each subtree is a range split at its middle point, on x at even depths.
+
+    public KdTree(DataStorer data, int[] rawCells) {
+        cells = Arrays.stream(rawCells).distinct().toArray();
+        xs = new long[cells.length];
+        ys = new long[cells.length];
+        tree = new int[cells.length];
+        for (int pointNum = 0; pointNum < cells.length; pointNum++) {
+            double[] coords = data.cellLocationToRawXY(cells[pointNum]);
+            xs[pointNum] = (long) coords[0];
+            ys[pointNum] = (long) coords[1];
+            tree[pointNum] = pointNum;
+        }
+        build(0, cells.length, 0);
+    }
+
+    public int getNumPoints() {
+        return cells.length;
+    }
+
+    public int getCell(int pointNum) {
+        return cells[pointNum];
+    }
+
+    public long getSquaredDistance(int point1, int point2) {
+        long dx = xs[point1] - xs[point2];
+        long dy = ys[point1] - ys[point2];
+        return dx * dx + dy * dy;
+    }
+
+    // Dot product of the vectors from point1 and point2 to point
+    public long getDotProduct(int point, int point1, int point2) {
+        return (xs[point1] - xs[point]) * (xs[point2] - xs[point]) + (ys[point1] - ys[point]) * (ys[point2] - ys[point]);
+    }
+
+    // Up to k other points nearest to pointNum, closest first. Ties go to the lower point num.
+    public int[] getNearest(int pointNum, int k) {
+        k = Math.min(k, cells.length - 1);
+        int[] nearest = new int[k];
+        long[] distances = new long[k];
+        Arrays.fill(distances, Long.MAX_VALUE);
+        findNearest(pointNum, 0, cells.length, 0, nearest, distances);
+        return nearest;
+    }
+
+    // Some point within the squared radius of center passes test
+    public boolean hasPointWithin(int center, long squaredRadius, IntPredicate test) {
+        return findWithin(center, squaredRadius, test, 0, cells.length, 0);
+    }
+
+    private void build(int start, int end, int depth) {
+        if (end - start < 2) {
+            return;
+        }
+        int middle = (start + end) >>> 1;
+        select(start, end, middle, depth % 2 == 0 ? xs : ys);
+        build(start, middle, depth + 1);
+        build(middle + 1, end, depth + 1);
+    }
+
+    // Put the point of rank target on coords at target, lower ones before it and higher ones after
+    private void select(int start, int end, int target, long[] coords) {
+        end--;
+        while (start < end) {
+            long pivot = coords[tree[(start + end) >>> 1]];
+            int i = start;
+            int j = end;
+            while (i <= j) {
+                while (coords[tree[i]] < pivot) {
+                    i++;
+                }
+                while (coords[tree[j]] > pivot) {
+                    j--;
+                }
+                if (i <= j) {
+                    int temp = tree[i];
+                    tree[i++] = tree[j];
+                    tree[j--] = temp;
+                }
+            }
+            if (target <= j) {
+                end = j;
+            } else if (target >= i) {
+                start = i;
+            } else {
+                return;
+            }
+        }
+    }
+
+    private void findNearest(int pointNum, int start, int end, int depth, int[] nearest, long[] distances) {
+        if (start >= end) {
+            return;
+        }
+        int middle = (start + end) >>> 1;
+        int splitPoint = tree[middle];
+        if (splitPoint != pointNum) {
+            long distance = getSquaredDistance(pointNum, splitPoint);
+            int slot = nearest.length;
+            while (slot > 0 && (distance < distances[slot - 1] || (distance == distances[slot - 1] && splitPoint < nearest[slot - 1]))) {
+                slot--;
+            }
+            if (slot < nearest.length) {
+                System.arraycopy(nearest, slot, nearest, slot + 1, nearest.length - slot - 1);
+                System.arraycopy(distances, slot, distances, slot + 1, distances.length - slot - 1);
+                nearest[slot] = splitPoint;
+                distances[slot] = distance;
+            }
+        }
+
+        // Near side first, then the far side if the split line is close enough
+        long offset = depth % 2 == 0 ? xs[pointNum] - xs[splitPoint] : ys[pointNum] - ys[splitPoint];
+        if (offset < 0) {
+            findNearest(pointNum, start, middle, depth + 1, nearest, distances);
+            if (nearest.length > 0 && offset * offset <= distances[nearest.length - 1]) {
+                findNearest(pointNum, middle + 1, end, depth + 1, nearest, distances);
+            }
+        } else {
+            findNearest(pointNum, middle + 1, end, depth + 1, nearest, distances);
+            if (nearest.length > 0 && offset * offset <= distances[nearest.length - 1]) {
+                findNearest(pointNum, start, middle, depth + 1, nearest, distances);
+            }
+        }
+    }
+
+    private boolean findWithin(int center, long squaredRadius, IntPredicate test, int start, int end, int depth) {
+        if (start >= end) {
+            return false;
+        }
+        int middle = (start + end) >>> 1;
+        int splitPoint = tree[middle];
+        if (getSquaredDistance(center, splitPoint) <= squaredRadius && test.test(splitPoint)) {
+            return true;
+        }
+        long offset = depth % 2 == 0 ? xs[center] - xs[splitPoint] : ys[center] - ys[splitPoint];
+        if ((offset <= 0 || offset * offset <= squaredRadius) && findWithin(center, squaredRadius, test, start, middle, depth + 1)) {
+            return true;
+        }
+        return (offset >= 0 || offset * offset <= squaredRadius) && findWithin(center, squaredRadius, test, middle + 1, end, depth + 1);
+    }
+}
@@ -0,0 +1,41 @@
+package solver;
+
+import dataStore.DataStorer;
+import dataStore.Edge;
+import java.util.HashSet;
+
+/**
+ * Pairs each cell with its k nearest cells. Sparse and fast, but unlike Delaunay pairs it can leave clusters of
+ * cells unconnected to each other.
+ *
+ * @author yaw
+ */
+public class NearestNeighborGraph implements CandidateGraphGenerator {
+
+    private DataStorer data;
+    private int numNeighbors;
+
+    public NearestNeighborGraph(DataStorer data, int numNeighbors) {
+        this.data = data;
+        this.numNeighbors = numNeighbors;
+    }
+
+    @Override
+    public String getName() {
+        return numNeighbors + "-Nearest Neighbor";
+    }
+
+    @Override
+    public HashSet<Edge> generatePairs(int[] cells) {
+        KdTree tree = new KdTree(data, cells);
+        HashSet<Edge> pairs = new HashSet<>();
+        for (int pointNum = 0; pointNum < tree.getNumPoints(); pointNum++) {
+            for (int neighbor : tree.getNearest(pointNum, numNeighbors)) {
+                int cell1 = tree.getCell(pointNum);
+                int cell2 = tree.getCell(neighbor);
+                pairs.add(new Edge(Math.min(cell1, cell2), Math.max(cell1, cell2)));
+            }
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,61 @@
+package solver;
+
+import dataStore.DataStorer;
+import dataStore.Edge;
+import java.util.HashMap;
+import java.util.HashSet;
+
+/**
+ * Delaunay pairs whose empty region holds no other cell. The Gabriel graph ("gabriel") keeps a pair if the circle
+ * with the pair as diameter is empty. The relative neighborhood graph ("rng") keeps a pair if no cell is closer to
+ * both cells than they are to each other. Both stay connected, and the relative neighborhood graph is the sparser.
+ *
+ * @author yaw
+ */
+public class ProximityGraph implements CandidateGraphGenerator {
+
+    private DataStorer data;
+    private String type;
+
+    public ProximityGraph(DataStorer data, String type) {
+        this.data = data;
+        this.type = type;
+    }
+
+    @Override
+    public String getName() {
+        return type.equals("rng") ? "Relative Neighborhood" : "Gabriel";
+    }
+
+    @Override
+    public HashSet<Edge> generatePairs(int[] cells) {
+        KdTree tree = new KdTree(data, cells);
+        HashSet<Edge> delaunayPairs = new Delaunay(data).generatePairs(cells);
+        HashSet<Edge> pairs = new HashSet<>();
+        if (delaunayPairs.size() < 2) {
+            return delaunayPairs;
+        }
+
+        HashMap<Integer, Integer> pointNums = new HashMap<>();
+        for (int pointNum = 0; pointNum < tree.getNumPoints(); pointNum++) {
+            pointNums.put(tree.getCell(pointNum), pointNum);
+        }
+        for (Edge pair : delaunayPairs) {
+            int point1 = pointNums.get(pair.v1);
+            int point2 = pointNums.get(pair.v2);
+            long squaredLength = tree.getSquaredDistance(point1, point2);
+            boolean blocked;
+            if (type.equals("rng")) {
+                blocked = tree.hasPointWithin(point1, squaredLength, point -> point != point1 && point != point2
+                        && tree.getSquaredDistance(point, point1) < squaredLength && tree.getSquaredDistance(point, point2) < squaredLength);
+            } else {
+                blocked = tree.hasPointWithin(point1, squaredLength, point -> point != point1 && point != point2
+                        && tree.getDotProduct(point, point1, point2) < 0);
+            }
+            if (!blocked) {
+                pairs.add(pair);
+            }
+        }
+        return pairs;
+    }
+}
@@ -0,0 +1,160 @@
+package solver;
+
+import java.util.Arrays;
+
+/**
+ * Monotone radix heap of int ids in [0, capacity) keyed by non-negative doubles, with decrease-key.
+ * Keys may not be lower than the last key polled, which holds for Dijkstra with non-negative edge costs.
+ * Non-negative doubles order the same as their raw bits, so keys are bucketed by the highest bit in which
+ * they differ from the last key polled. Each id moves down at most 64 buckets in its lifetime.
+ *
+ * @author yaw
+ */
+public class RadixHeap implements IndexedMinQueue {
+
+    private static final int NUM_BUCKETS = 65;
+
+    private int[][] buckets;    // [bucketNum] = ids, bucket 0 holds ids keyed the same as last
+    private int[] bucketSizes;
+    private int[] bucketNums;   // [id] = bucket of id, -1 if not in heap
+    private int[] slots;        // [id] = index of id in its bucket
+    private long[] keys;        // [id] = raw bits of key
+    private long last;          // Raw bits of the last key polled
+    private int size;
+
+    public RadixHeap(int capacity) {
+        buckets = new int[NUM_BUCKETS][16];
+        bucketSizes = new int[NUM_BUCKETS];
+        bucketNums = new int[capacity];
+        slots = new int[capacity];
+        keys = new long[capacity];
+        Arrays.fill(bucketNums, -1);
+    }
+
+    @Override
+    public int capacity() {
+        return bucketNums.length;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public boolean isEmpty() {
+        return size == 0;
+    }
+
+    @Override
+    public boolean contains(int id) {
+        return bucketNums[id] >= 0;
+    }
+
+    @Override
+    public double getKey(int id) {
+        return Double.longBitsToDouble(keys[id]);
+    }
+
+    @Override
+    public double peekKey() {
+        if (bucketSizes[0] > 0) {
+            return Double.longBitsToDouble(last);
+        }
+        int bucketNum = firstNonEmptyBucket();
+        return Double.longBitsToDouble(keys[minId(bucketNum)]);
+    }
+
+    @Override
+    public void insertOrDecrease(int id, double key) {
+        long bits = Double.doubleToRawLongBits(key);
+        if (key < 0 || bits < last) {
+            throw new IllegalArgumentException("Key " + key + " is below the last key polled");
+        }
+        if (bucketNums[id] < 0) {
+            keys[id] = bits;
+            add(id);
+            size++;
+        } else if (bits < keys[id]) {
+            remove(id);
+            keys[id] = bits;
+            add(id);
+        }
+    }
+
+    @Override
+    public int poll() {
+        if (bucketSizes[0] == 0) {
+            // Move the smallest key up to last and spread its bucket over the lower buckets
+            int bucketNum = firstNonEmptyBucket();
+            last = keys[minId(bucketNum)];
+            int[] bucket = buckets[bucketNum];
+            int bucketSize = bucketSizes[bucketNum];
+            bucketSizes[bucketNum] = 0;
+            for (int i = 0; i < bucketSize; i++) {
+                add(bucket[i]);
+            }
+        }
+        int id = buckets[0][--bucketSizes[0]];
+        bucketNums[id] = -1;
+        size--;
+        if (size == 0) {
+            last = 0;
+        }
+        return id;
+    }
+
+    @Override
+    public void clear() {
+        for (int bucketNum = 0; bucketNum < NUM_BUCKETS; bucketNum++) {
+            for (int i = 0; i < bucketSizes[bucketNum]; i++) {
+                bucketNums[buckets[bucketNum][i]] = -1;
+            }
+            bucketSizes[bucketNum] = 0;
+        }
+        size = 0;
+        last = 0;
+    }
+
+    private int getBucketNum(long bits) {
+        return bits == last ? 0 : 64 - Long.numberOfLeadingZeros(bits ^ last);
+    }
+
+    private void add(int id) {
+        int bucketNum = getBucketNum(keys[id]);
+        if (bucketSizes[bucketNum] == buckets[bucketNum].length) {
+            buckets[bucketNum] = Arrays.copyOf(buckets[bucketNum], 2 * buckets[bucketNum].length);
+        }
+        bucketNums[id] = bucketNum;
+        slots[id] = bucketSizes[bucketNum];
+        buckets[bucketNum][bucketSizes[bucketNum]++] = id;
+    }
+
+    // Take id out of its bucket by moving the bucket's last id into its slot
+    private void remove(int id) {
+        int bucketNum = bucketNums[id];
+        int lastId = buckets[bucketNum][--bucketSizes[bucketNum]];
+        buckets[bucketNum][slots[id]] = lastId;
+        slots[lastId] = slots[id];
+        bucketNums[id] = -1;
+    }
+
+    private int firstNonEmptyBucket() {
+        int bucketNum = 1;
+        while (bucketSizes[bucketNum] == 0) {
+            bucketNum++;
+        }
+        return bucketNum;
+    }
+
+    private int minId(int bucketNum) {
+        int[] bucket = buckets[bucketNum];
+        int minId = bucket[0];
+        for (int i = 1; i < bucketSizes[bucketNum]; i++) {
+            if (keys[bucket[i]] < keys[minId]) {
+                minId = bucket[i];
+            }
+        }
+        return minId;
+    }
+}
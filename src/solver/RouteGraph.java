@@ -0,0 +1,278 @@
+package solver;
+
+import dataStore.DataStorer;
+import dataStore.Edge;
+import java.util.Arrays;
+import java.util.HashMap;
+import utilities.LongIntMap;
+
+/**
+ * Graph of the cell steps in a set of paths, reduced to a candidate network by contracting vertices of degree 2.
+ * Edges carry their construction and right of way costs as well as their total, each step looked up once.
+ * Contraction works from a worklist over array adjacency, so each vertex is revisited only when a neighbor is
+ * contracted. A contracted edge keeps the two edges it replaced, and routes are flattened once at the end.
+ *
+ * @author yaw
+ */
+public class RouteGraph {
+
+    private DataStorer data;
+
+    // Vertices
+    private LongIntMap cellVertices = new LongIntMap();  // [cell] = vertexNum
+    private int[] cells = new int[16];     // [vertexNum] = cell
+    private int numVertices;
+    private int[] adjacencyStart;   // [vertexNum] = first slot of vertexNum in incidentEdges, [vertexNum + 1] ends it
+    private int[] incidentEdges;    // [slot] = edgeNum
+    private boolean[] contracted;
+
+    // Edges. A step edge joins neighboring cells. A contracted edge runs from its first end through its middle to
+    // its second end, over its first then second part.
+    private LongIntMap stepEdges = new LongIntMap();    // [endpoint pair key] = edgeNum
+    private int[] edgeEnds = new int[32];   // [edgeNum * 2 + end] = vertexNum
+    private int[] edgeParts = new int[32];  // [edgeNum * 2 + part] = edgeNum, -1 for step edges
+    private int[] edgeMiddles = new int[16];    // [edgeNum] = vertexNum, -1 for step edges
+    private int[] edgeLengths = new int[16];    // [edgeNum] = number of steps
+    private double[] edgeCosts = new double[16];
+    private double[] edgeConstructionCosts = new double[16];
+    private double[] edgeRightOfWayCosts = new double[16];
+    private boolean[] merged = new boolean[16]; // Replaced by a contracted edge
+    private int numEdges;
+
+    public RouteGraph(DataStorer data) {
+        this.data = data;
+    }
+
+    // Add the steps of path. A step seen before takes the direction it was last added in.
+    public void addPath(int[] path) {
+        for (int i = 0; i < path.length - 1; i++) {
+            int v1 = getVertex(path[i]);
+            int v2 = getVertex(path[i + 1]);
+            long key = getPairKey(v1, v2);
+            int edgeNum = stepEdges.get(key);
+            if (edgeNum < 0) {
+                edgeNum = newEdge(v1, v2);
+                stepEdges.put(key, edgeNum);
+            }
+            edgeEnds[edgeNum * 2] = v1;
+            edgeEnds[edgeNum * 2 + 1] = v2;
+        }
+    }
+
+    // Contract vertices of degree 2 that are not terminals, unless their neighbors are already joined
+    public void contract(int[] terminalCells) {
+        double[] components = new double[2];
+        for (int edgeNum = 0; edgeNum < numEdges; edgeNum++) {
+            data.getEdgeCostComponents(cells[edgeEnds[edgeNum * 2]], cells[edgeEnds[edgeNum * 2 + 1]], components);
+            edgeConstructionCosts[edgeNum] = components[0];
+            edgeRightOfWayCosts[edgeNum] = components[1];
+            edgeCosts[edgeNum] = components[0] + components[1];
+        }
+        makeAdjacency();
+
+        boolean[] terminals = new boolean[numVertices];
+        for (int cell : terminalCells) {
+            int vertexNum = cellVertices.get(cell);
+            if (vertexNum >= 0) {
+                terminals[vertexNum] = true;
+            }
+        }
+
+        // Worklist of vertices that may be contractible, each queued at most once at a time
+        int[] queue = new int[numVertices + 1];
+        boolean[] queued = new boolean[numVertices];
+        int head = 0;
+        int tail = 0;
+        for (int vertexNum = 0; vertexNum < numVertices; vertexNum++) {
+            if (!terminals[vertexNum] && getDegree(vertexNum) == 2) {
+                queue[tail++] = vertexNum;
+                queued[vertexNum] = true;
+            }
+        }
+        while (head != tail) {
+            int vertexNum = queue[head];
+            head = (head + 1) % queue.length;
+            queued[vertexNum] = false;
+
+            int edge1 = incidentEdges[adjacencyStart[vertexNum]];
+            int edge2 = incidentEdges[adjacencyStart[vertexNum] + 1];
+            int neighbor1 = getOtherEnd(edge1, vertexNum);
+            int neighbor2 = getOtherEnd(edge2, vertexNum);
+            // Only remove if it won't create multi-edges.
+            if (findEdge(neighbor1, neighbor2) < 0) {
+                int newEdgeNum = newEdge(neighbor1, neighbor2);
+                edgeParts[newEdgeNum * 2] = edge1;
+                edgeParts[newEdgeNum * 2 + 1] = edge2;
+                edgeMiddles[newEdgeNum] = vertexNum;
+                edgeLengths[newEdgeNum] = edgeLengths[edge1] + edgeLengths[edge2];
+                edgeCosts[newEdgeNum] = edgeCosts[edge1] + edgeCosts[edge2];
+                edgeConstructionCosts[newEdgeNum] = edgeConstructionCosts[edge1] + edgeConstructionCosts[edge2];
+                edgeRightOfWayCosts[newEdgeNum] = edgeRightOfWayCosts[edge1] + edgeRightOfWayCosts[edge2];
+                merged[edge1] = true;
+                merged[edge2] = true;
+                contracted[vertexNum] = true;
+                replaceIncidentEdge(neighbor1, edge1, newEdgeNum);
+                replaceIncidentEdge(neighbor2, edge2, newEdgeNum);
+
+                // Neighbors may now be contractible
+                for (int neighbor : new int[]{neighbor1, neighbor2}) {
+                    if (!terminals[neighbor] && !queued[neighbor] && getDegree(neighbor) == 2) {
+                        queue[tail] = neighbor;
+                        tail = (tail + 1) % queue.length;
+                        queued[neighbor] = true;
+                    }
+                }
+            }
+        }
+    }
+
+    // Returns {sorted vertex cells, edge costs, edge routes, edge right of way costs, edge construction costs} of the
+    // remaining graph
+    public Object[] getGraph() {
+        HashMap<Edge, Double> graphEdgeCosts = new HashMap<>();
+        HashMap<Edge, int[]> graphEdgeRoutes = new HashMap<>();
+        HashMap<Edge, Double> graphEdgeRightOfWayCosts = new HashMap<>();
+        HashMap<Edge, Double> graphEdgeConstructionCosts = new HashMap<>();
+        int[] stack = new int[2 * numEdges + 2];
+        for (int edgeNum = 0; edgeNum < numEdges; edgeNum++) {
+            if (!merged[edgeNum]) {
+                Edge e = new Edge(cells[edgeEnds[edgeNum * 2]], cells[edgeEnds[edgeNum * 2 + 1]]);
+                graphEdgeCosts.put(e, edgeCosts[edgeNum]);
+                graphEdgeRoutes.put(e, getRoute(edgeNum, stack));
+                graphEdgeRightOfWayCosts.put(e, edgeRightOfWayCosts[edgeNum]);
+                graphEdgeConstructionCosts.put(e, edgeConstructionCosts[edgeNum]);
+            }
+        }
+
+        int numRemaining = 0;
+        for (int vertexNum = 0; vertexNum < numVertices; vertexNum++) {
+            if (!contracted[vertexNum]) {
+                numRemaining++;
+            }
+        }
+        int[] vertices = new int[numRemaining];
+        int i = 0;
+        for (int vertexNum = 0; vertexNum < numVertices; vertexNum++) {
+            if (!contracted[vertexNum]) {
+                vertices[i++] = cells[vertexNum];
+            }
+        }
+        Arrays.sort(vertices);
+        return new Object[]{vertices, graphEdgeCosts, graphEdgeRoutes, graphEdgeRightOfWayCosts, graphEdgeConstructionCosts};
+    }
+
+    // Cells from the first end of edgeNum to its second, unpacking contracted edges depth first
+    private int[] getRoute(int edgeNum, int[] stack) {
+        int[] route = new int[edgeLengths[edgeNum] + 1];
+        int routeLength = 0;
+        route[routeLength++] = cells[edgeEnds[edgeNum * 2]];
+        int stackSize = 0;
+        stack[stackSize++] = edgeNum;
+        stack[stackSize++] = edgeEnds[edgeNum * 2];
+        while (stackSize > 0) {
+            int from = stack[--stackSize];
+            int part = stack[--stackSize];
+            if (edgeParts[part * 2] < 0) {
+                route[routeLength++] = cells[getOtherEnd(part, from)];
+            } else {
+                // Push the part leaving from last so it is walked first
+                int middle = edgeMiddles[part];
+                int firstPart = edgeParts[part * 2];
+                int secondPart = edgeParts[part * 2 + 1];
+                if (from != edgeEnds[part * 2]) {
+                    firstPart = edgeParts[part * 2 + 1];
+                    secondPart = edgeParts[part * 2];
+                }
+                stack[stackSize++] = secondPart;
+                stack[stackSize++] = middle;
+                stack[stackSize++] = firstPart;
+                stack[stackSize++] = from;
+            }
+        }
+        return route;
+    }
+
+    // Slots of each vertex's edges, which contraction keeps in place
+    private void makeAdjacency() {
+        adjacencyStart = new int[numVertices + 1];
+        for (int edgeNum = 0; edgeNum < numEdges; edgeNum++) {
+            adjacencyStart[edgeEnds[edgeNum * 2] + 1]++;
+            adjacencyStart[edgeEnds[edgeNum * 2 + 1] + 1]++;
+        }
+        for (int vertexNum = 0; vertexNum < numVertices; vertexNum++) {
+            adjacencyStart[vertexNum + 1] += adjacencyStart[vertexNum];
+        }
+        incidentEdges = new int[adjacencyStart[numVertices]];
+        int[] nextSlot = Arrays.copyOf(adjacencyStart, numVertices);
+        for (int edgeNum = 0; edgeNum < numEdges; edgeNum++) {
+            incidentEdges[nextSlot[edgeEnds[edgeNum * 2]]++] = edgeNum;
+            incidentEdges[nextSlot[edgeEnds[edgeNum * 2 + 1]]++] = edgeNum;
+        }
+        contracted = new boolean[numVertices];
+    }
+
+    private int getDegree(int vertexNum) {
+        return adjacencyStart[vertexNum + 1] - adjacencyStart[vertexNum];
+    }
+
+    private int getOtherEnd(int edgeNum, int vertexNum) {
+        return edgeEnds[edgeNum * 2] == vertexNum ? edgeEnds[edgeNum * 2 + 1] : edgeEnds[edgeNum * 2];
+    }
+
+    // Edge joining two vertices, -1 if none
+    private int findEdge(int vertex1, int vertex2) {
+        for (int slot = adjacencyStart[vertex1]; slot < adjacencyStart[vertex1 + 1]; slot++) {
+            if (getOtherEnd(incidentEdges[slot], vertex1) == vertex2) {
+                return incidentEdges[slot];
+            }
+        }
+        return -1;
+    }
+
+    private void replaceIncidentEdge(int vertexNum, int oldEdgeNum, int newEdgeNum) {
+        for (int slot = adjacencyStart[vertexNum]; slot < adjacencyStart[vertexNum + 1]; slot++) {
+            if (incidentEdges[slot] == oldEdgeNum) {
+                incidentEdges[slot] = newEdgeNum;
+            }
+        }
+    }
+
+    private int getVertex(int cell) {
+        int vertexNum = cellVertices.get(cell);
+        if (vertexNum < 0) {
+            if (numVertices == cells.length) {
+                cells = Arrays.copyOf(cells, 2 * cells.length);
+            }
+            vertexNum = numVertices++;
+            cells[vertexNum] = cell;
+            cellVertices.put(cell, vertexNum);
+        }
+        return vertexNum;
+    }
+
+    private int newEdge(int vertex1, int vertex2) {
+        if (numEdges == edgeLengths.length) {
+            int capacity = 2 * edgeLengths.length;
+            edgeEnds = Arrays.copyOf(edgeEnds, 2 * capacity);
+            edgeParts = Arrays.copyOf(edgeParts, 2 * capacity);
+            edgeMiddles = Arrays.copyOf(edgeMiddles, capacity);
+            edgeLengths = Arrays.copyOf(edgeLengths, capacity);
+            edgeCosts = Arrays.copyOf(edgeCosts, capacity);
+            edgeConstructionCosts = Arrays.copyOf(edgeConstructionCosts, capacity);
+            edgeRightOfWayCosts = Arrays.copyOf(edgeRightOfWayCosts, capacity);
+            merged = Arrays.copyOf(merged, capacity);
+        }
+        int edgeNum = numEdges++;
+        edgeEnds[edgeNum * 2] = vertex1;
+        edgeEnds[edgeNum * 2 + 1] = vertex2;
+        edgeParts[edgeNum * 2] = -1;
+        edgeParts[edgeNum * 2 + 1] = -1;
+        edgeMiddles[edgeNum] = -1;
+        edgeLengths[edgeNum] = 1;
+        return edgeNum;
+    }
+
+    private static long getPairKey(int vertex1, int vertex2) {
+        return ((long) Math.min(vertex1, vertex2) << 32) | Math.max(vertex1, vertex2);
+    }
+}
@@ -1,15 +1,17 @@
 package solver;
 
+import dataStore.CostSurface;
 import dataStore.DataStorer;
 import dataStore.Edge;
 import dataStore.Source;
 import dataStore.Sink;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.BitSet;
 import java.util.HashMap;
 import java.util.HashSet;
-import java.util.Iterator;
-import java.util.PriorityQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
 import javafx.scene.control.TextArea;
 import static utilities.Utilities.*;
 
@@ -21,6 +23,35 @@ public class Solver {
 
     private DataStorer data;
     private TextArea messenger;
+    private ThreadLocal<HashMap<Integer, SearchSpace>> searchSpaces = new ThreadLocal<>();  // Dijkstra buffers by surface size, one set per thread
+
+    // Parallel all pair shortest paths
+    private int numThreads = 1;
+    private int roundSize = 16;     // Searches per round. Each round reads the routing cost discounts of earlier rounds only.
+
+    // Delaunay corridor search
+    private boolean corridorSearch = false;     // Only search Delaunay pairs, each within a corridor around the pair
+    private String corridorShape = "ellipse";   // "ellipse" or "box"
+    private double corridorWidth = .25;     // Margin around the pair as a fraction of the distance between them
+    private int minCorridorMargin = 5;      // Smallest margin, in cells
+
+    private String queueType = "binary";    // Search engine queue, "binary" heap or "radix" heap
+
+    // Candidate pairs
+    private String candidateGraphType = "delaunay";     // "delaunay", "knn", "gabriel", or "rng"
+    private int candidateNeighbors = 4;     // Neighbors per cell for "knn"
+
+    // Coarse to fine routing
+    private int coarseLevels = 0;   // Pyramid levels to route through before full resolution, 0 for exact routing only
+    private int coarseCorridorRadius = 2;   // Cells kept around each coarse path. Larger is closer to exact but slower.
+    private boolean compareCoarseRouting = false;   // Also run exact searches and report the difference
+    private CostPyramid pyramid;
+    private CoarseRoutingReport coarseRoutingReport;
+
+    // Answer searches from the contraction hierarchy saved with the cost files. Its paths follow the unmodified
+    // routing costs, so earlier paths do not attract later ones, and searches ignore corridors and coarse levels.
+    private boolean useRoutingHierarchy = false;
+    private int numCorridorWidenings;
 
     public Solver(DataStorer data) {
         this.data = data;
@@ -31,6 +62,11 @@ public class Solver {
         ArrayList<int[]> allPathsList = new ArrayList<>();
         ArrayList<Double> allPathCostsList = new ArrayList<>();
         int[] sourcesAndSinks = data.getSourceSinkCells();
+        pyramid = null;
+        if (coarseLevels > 0) {
+            pyramid = new CostPyramid(data.getModifiedRoutingCosts(), coarseLevels);
+            coarseRoutingReport = new CoarseRoutingReport();
+        }
 
         // Check for sources/sinks out of cost surface
         HashSet<Source> unreachableSources = new HashSet<>();
@@ -80,152 +116,155 @@ public class Solver {
                 message = message.substring(0, message.length() - 2);
             }
             messenger.setText(message);
+        } else if (corridorSearch) {
+            Object[] pathDetails = generateDelaunayPairShortestPaths(sourcesAndSinks);
+            if (pyramid != null) {
+                coarseRoutingReport.print();
+            }
+            return pathDetails;
         } else {
-            for (int nodeNum = 0; nodeNum < sourcesAndSinks.length - 1; nodeNum++) {
-                int[] destinations = new int[sourcesAndSinks.length - nodeNum - 1];
-                System.arraycopy(sourcesAndSinks, nodeNum + 1, destinations, 0, destinations.length);
-                Object[] sourcePathsAndCosts = dijkstra(sourcesAndSinks[nodeNum], destinations, .9999999);
+            Object[][] nodePathsAndCosts = new Object[Math.max(sourcesAndSinks.length - 1, 0)][];
+            if (useRoutingHierarchy) {
+                // Build or load before searches share it
+                data.getRoutingHierarchy();
+            }
+            if (numThreads > 1) {
+                generateShortestPathsInRounds(sourcesAndSinks, nodePathsAndCosts, .9999999);
+            } else {
+                for (int nodeNum = 0; nodeNum < sourcesAndSinks.length - 1; nodeNum++) {
+                    nodePathsAndCosts[nodeNum] = dijkstra(sourcesAndSinks[nodeNum], getLaterNodes(sourcesAndSinks, nodeNum), .9999999);
+                }
+            }
+            for (Object[] sourcePathsAndCosts : nodePathsAndCosts) {
                 allPathsList.addAll((ArrayList<int[]>) sourcePathsAndCosts[0]);
                 allPathCostsList.addAll((ArrayList<Double>) sourcePathsAndCosts[1]);
             }
             int[][] allPaths = allPathsList.toArray(new int[0][0]);
             double[] allPathCosts = convertDoubleArray(allPathCostsList.toArray(new Double[0]));
+            if (pyramid != null) {
+                coarseRoutingReport.print();
+            }
             return new Object[]{allPaths, allPathCosts};
         }
         return null;
     }
 
+    // Run the searches of generateAllPairShortestPaths on a pool, roundSize nodes at a time. Searches in a round all
+    // read the same routing costs, and their discounts are applied in node order once the round is done. Results
+    // depend on roundSize but not on numThreads. A roundSize of 1 matches the sequential order.
+    private void generateShortestPathsInRounds(int[] sourcesAndSinks, Object[][] nodePathsAndCosts, double edgeCostModification) {
+        ForkJoinPool pool = new ForkJoinPool(numThreads);
+        try {
+            for (int roundStart = 0; roundStart < nodePathsAndCosts.length; roundStart += roundSize) {
+                int roundEnd = Math.min(roundStart + roundSize, nodePathsAndCosts.length);
+                pool.invoke(new PathTask(sourcesAndSinks, nodePathsAndCosts, roundStart, roundEnd));
+                for (int nodeNum = roundStart; nodeNum < roundEnd; nodeNum++) {
+                    updateModifiedEdgeRoutingCosts((ArrayList<int[]>) nodePathsAndCosts[nodeNum][0], edgeCostModification);
+                }
+            }
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    // Nodes after nodeNum, which it is paired with
+    private int[] getLaterNodes(int[] sourcesAndSinks, int nodeNum) {
+        int[] destinations = new int[sourcesAndSinks.length - nodeNum - 1];
+        System.arraycopy(sourcesAndSinks, nodeNum + 1, destinations, 0, destinations.length);
+        return destinations;
+    }
+
+    // Find shortest path between each Delaunay pair, searching a corridor around the pair. The corridor is widened
+    // until the pair is connected, ending with the whole cost surface. Pairs still unconnected then are skipped.
+    private Object[] generateDelaunayPairShortestPaths(int[] sourcesAndSinks) {
+        ArrayList<int[]> allPathsList = new ArrayList<>();
+        ArrayList<Double> allPathCostsList = new ArrayList<>();
+
+        // Order pairs as generateAllPairShortestPaths would, earlier node as the source
+        HashMap<Integer, Integer> cellNumToNodeNum = new HashMap<>();
+        for (int nodeNum = 0; nodeNum < sourcesAndSinks.length; nodeNum++) {
+            cellNumToNodeNum.put(sourcesAndSinks[nodeNum], nodeNum);
+        }
+        ArrayList<int[]> pairs = new ArrayList<>();
+        for (Edge pair : data.getDelaunayPairs()) {
+            int node1 = cellNumToNodeNum.get(pair.v1);
+            int node2 = cellNumToNodeNum.get(pair.v2);
+            if (node1 != node2) {
+                pairs.add(new int[]{Math.min(node1, node2), Math.max(node1, node2)});
+            }
+        }
+        pairs.sort((p1, p2) -> p1[0] != p2[0] ? Integer.compare(p1[0], p2[0]) : Integer.compare(p1[1], p2[1]));
+
+        numCorridorWidenings = 0;
+        int numUnconnectedPairs = 0;
+        for (int[] pair : pairs) {
+            int src = sourcesAndSinks[pair[0]];
+            int dest = sourcesAndSinks[pair[1]];
+            Corridor corridor = new Corridor(src, dest);
+            Object[] pathsAndCosts = findPaths(src, new int[]{dest}, corridor.coversSurface() ? null : corridor);
+            while (pathsAndCosts == null && !corridor.coversSurface()) {
+                numCorridorWidenings++;
+                corridor = corridor.widen();
+                pathsAndCosts = findPaths(src, new int[]{dest}, corridor.coversSurface() ? null : corridor);
+            }
+            if (pathsAndCosts == null) {
+                numUnconnectedPairs++;
+                System.out.println("No path between cells " + src + " and " + dest);
+                continue;
+            }
+            updateModifiedEdgeRoutingCosts((ArrayList<int[]>) pathsAndCosts[0], .9999999);
+            allPathsList.addAll((ArrayList<int[]>) pathsAndCosts[0]);
+            allPathCostsList.addAll((ArrayList<Double>) pathsAndCosts[1]);
+        }
+        System.out.println("Corridor Searches: " + pairs.size() + ", Widened: " + numCorridorWidenings + ", Unconnected: " + numUnconnectedPairs);
+
+        int[][] allPaths = allPathsList.toArray(new int[0][0]);
+        double[] allPathCosts = convertDoubleArray(allPathCostsList.toArray(new Double[0]));
+        return new Object[]{allPaths, allPathCosts};
+    }
+
     public HashSet<Edge> generateDelaunayPairs() {
-        Delaunay d = new Delaunay(data);
+        CandidateGraphGenerator generator = getCandidateGraphGenerator();
         int[] locations = data.getSourceSinkCells();
-        return d.run(locations);
+        long startTime = System.nanoTime();
+        HashSet<Edge> pairs = generator.generatePairs(locations);
+        System.out.println(generator.getName() + " Pairs: " + pairs.size() + ", " + round((System.nanoTime() - startTime) / 1e6, 2) + " ms");
+        return pairs;
+    }
+
+    private CandidateGraphGenerator getCandidateGraphGenerator() {
+        if (candidateGraphType.equals("knn")) {
+            return new NearestNeighborGraph(data, candidateNeighbors);
+        } else if (candidateGraphType.equals("gabriel") || candidateGraphType.equals("rng")) {
+            return new ProximityGraph(data, candidateGraphType);
+        }
+        return new Delaunay(data);
     }
 
     // Delaunay-based candidate graph.
     public Object[] generateDelaunayCandidateGraph() {
         //data.generateDelaunayPairs();
         HashSet<Edge> delaunayPairs = data.getDelaunayPairs();
-        HashMap<Edge, Double> graphEdgeCosts = new HashMap<>();
-        HashMap<Edge, int[]> graphEdgeRoutes = new HashMap<>();
-        HashMap<Integer, HashSet<Integer>> vertexNeighbors = new HashMap<>();    // Neighbors of a given vertex
-        HashSet<Integer> sourceSinksList = new HashSet<>(); // List of source and sink vertices
-        HashSet<Integer> degree2Vertices = new HashSet<>(); // Non-source/sink vertices with degree 2
 
         // Populate initial costs, routes, and neighbors
         int[][] apShortestPaths = data.getShortestPathEdges();
         if (apShortestPaths != null) {
+            RouteGraph graph = new RouteGraph(data);
             for (Edge pair : delaunayPairs) {
-                for (int[] path : apShortestPaths) {
-                    if ((path[0] == pair.v1 && path[path.length - 1] == pair.v2) || (path[0] == pair.v2 && path[path.length - 1] == pair.v1)) {
-                        for (int i = 0; i < path.length - 1; i++) {
-                            Edge e = new Edge(path[i], path[i + 1]);
-                            graphEdgeCosts.put(e, data.getEdgeWeight(path[i], path[i + 1], "c"));
-                            graphEdgeRoutes.put(e, new int[]{path[i], path[i + 1]});
-
-                            // Add neighbor of i and i+1
-                            if (!vertexNeighbors.containsKey(path[i])) {
-                                vertexNeighbors.put(path[i], new HashSet<>());
-                            }
-                            vertexNeighbors.get(path[i]).add(path[i + 1]);
-                            if (!vertexNeighbors.containsKey(path[i + 1])) {
-                                vertexNeighbors.put(path[i + 1], new HashSet<>());
-                            }
-                            vertexNeighbors.get(path[i + 1]).add(path[i]);
-                        }
-                    }
-                }
-            }
-
-            // Populate vertex lists
-            for (int cell : data.getSourceSinkCells()) {
-                sourceSinksList.add(cell);
-            }
-
-            // Make set of removable degree 2 vertices
-            for (int vertex : vertexNeighbors.keySet()) {
-                if (!sourceSinksList.contains(vertex) && vertexNeighbors.get(vertex).size() == 2) {
-                    degree2Vertices.add(vertex);
+                for (int pathNum : data.getShortestPathsBetween(pair.v1, pair.v2)) {
+                    graph.addPath(apShortestPaths[pathNum]);
                 }
             }
 
             // Reduce degree 2 vertices
-            boolean degree2Removed = true;
-            while (degree2Removed) {
-                degree2Removed = false;
-                for (Iterator<Integer> iter = degree2Vertices.iterator(); iter.hasNext();) {
-                    int vertex = iter.next();
-                    int[] neighbors = convertIntegerArray(vertexNeighbors.get(vertex).toArray(new Integer[0]));
-                    // Only remove if it won't create multi-edges.
-                    Edge newEdge = new Edge(neighbors[0], neighbors[1]);
-                    if (!graphEdgeCosts.containsKey(newEdge)) {
-                        degree2Removed = true;
-
-                        // Get old edges
-                        Edge oldEdge1 = new Edge(neighbors[0], vertex);
-                        Edge oldEdge2 = new Edge(vertex, neighbors[1]);
-
-                        // Add new edge to edgeCosts
-                        double newCost = graphEdgeCosts.get(oldEdge1) + graphEdgeCosts.get(oldEdge2);
-                        graphEdgeCosts.put(newEdge, newCost);
-
-                        // Remove old edge from edgeCosts
-                        graphEdgeCosts.remove(oldEdge1);
-                        graphEdgeCosts.remove(oldEdge2);
-
-                        // Add route for new edge to edgeRoutes
-                        int[] oldRoute1 = graphEdgeRoutes.get(oldEdge1);
-                        int[] oldRoute2 = graphEdgeRoutes.get(oldEdge2);
-                        int[] newRoute = new int[oldRoute1.length + oldRoute2.length - 1];
-                        if (oldRoute1[oldRoute1.length - 1] == vertex) {
-                            for (int i = 0; i < oldRoute1.length; i++) {
-                                newRoute[i] = oldRoute1[i];
-                            }
-                        } else {
-                            for (int i = 0; i < oldRoute1.length; i++) {
-                                newRoute[oldRoute1.length - 1 - i] = oldRoute1[i];
-                            }
-                        }
-                        if (oldRoute2[0] == vertex) {
-                            for (int i = 1; i < oldRoute2.length; i++) {
-                                newRoute[i + oldRoute1.length - 1] = oldRoute2[i];
-                            }
-                        } else {
-                            for (int i = 0; i < oldRoute2.length - 1; i++) {
-                                newRoute[oldRoute1.length - 1 + oldRoute2.length - 1 - i] = oldRoute2[i];
-                            }
-                        }
-                        graphEdgeRoutes.put(newEdge, newRoute);
-
-                        // Remove route for old edge from edgeRoutes
-                        graphEdgeRoutes.remove(oldEdge1);
-                        graphEdgeRoutes.remove(oldEdge2);
-
-                        // Add neighbors for endpoint of new edge to vertexNeighbors
-                        vertexNeighbors.get(neighbors[0]).add(neighbors[1]);
-                        vertexNeighbors.get(neighbors[0]).remove(vertex);
-                        vertexNeighbors.get(neighbors[1]).add(neighbors[0]);
-                        vertexNeighbors.get(neighbors[1]).remove(vertex);
-
-                        // Remove old vertex from vertexNeighbors
-                        vertexNeighbors.remove(vertex);
-
-                        // Remove old vertex from degree2Vertices
-                        iter.remove();
-                    }
-                }
-            }
-            int[] vertices = new int[vertexNeighbors.keySet().size()];
-            int i = 0;
-            for (int vertex : vertexNeighbors.keySet()) {
-                vertices[i++] = vertex;
-            }
-            Arrays.sort(vertices);
-            return new Object[]{vertices, graphEdgeCosts, graphEdgeRoutes};
+            graph.contract(data.getSourceSinkCells());
+            return graph.getGraph();
         } else {
             return null;
         }
     }
 
+    // Right of way and construction costs by walking each route. Generated graphs sum these as they are built.
     public Object[] makeComponentCosts() {
         HashMap<Edge, int[]> graphEdgeRoutes = data.getGraphEdgeRoutes();
         HashMap<Edge, Double> constructionCosts = new HashMap<>();
@@ -247,49 +286,113 @@ public class Solver {
 
     // Modfidied dijkstra for operating on cost surface and allowing to change edge weights
     public Object[] dijkstra(int src, int[] destinations, double edgeCostModification) {
-        HashSet<Integer> connectedDests = new HashSet<>();
-        for (int cell : destinations) {
-            connectedDests.add(cell);
+        Object[] pathsAndCosts = findPaths(src, destinations, null);
+        updateModifiedEdgeRoutingCosts((ArrayList<int[]>) pathsAndCosts[0], edgeCostModification);
+        return pathsAndCosts;
+    }
+
+    // Search from src to destinations within area that leaves edge weights unchanged, routed coarse to fine when
+    // coarse levels are set. Returns null if a destination could not be reached inside area, never when area is null.
+    private Object[] findPaths(int src, int[] destinations, SearchArea area) {
+        if (useRoutingHierarchy) {
+            // Search the grid if the hierarchy cannot reach a destination
+            Object[] pathsAndCosts = findHierarchyPaths(src, destinations);
+            if (pathsAndCosts != null) {
+                return pathsAndCosts;
+            }
+        }
+        if (pyramid == null) {
+            return dijkstra(src, destinations, area);
+        }
+        long startTime = System.nanoTime();
+        Object[] pathsAndCosts = null;
+        BitSet corridorCells = findCoarseCorridor(src, destinations);
+        if (corridorCells != null) {
+            SearchArea refineArea = corridorCells::get;
+            if (area != null) {
+                refineArea = cellNum -> corridorCells.get(cellNum) && area.contains(cellNum);
+            }
+            pathsAndCosts = dijkstra(src, destinations, refineArea);
+        }
+        boolean refined = pathsAndCosts != null;
+        if (!refined) {
+            pathsAndCosts = dijkstra(src, destinations, area);
+        }
+        long time = System.nanoTime() - startTime;
+
+        Object[] exactPathsAndCosts = null;
+        long exactTime = 0;
+        if (compareCoarseRouting && pathsAndCosts != null) {
+            startTime = System.nanoTime();
+            exactPathsAndCosts = dijkstra(src, destinations, area);
+            exactTime = System.nanoTime() - startTime;
         }
-        int numNodes = data.getHeight() * data.getWidth() + 1;
-        PriorityQueue<Data> pQueue = new PriorityQueue<>(numNodes);
-        double[] costs = new double[numNodes];
-        int[] previous = new int[numNodes];
-        Data[] map = new Data[numNodes];
+        coarseRoutingReport.add(refined, time, pathsAndCosts, exactPathsAndCosts, exactTime);
+        return pathsAndCosts;
+    }
 
-        for (int cellNum = 0; cellNum < numNodes; cellNum++) {
-            costs[cellNum] = Double.MAX_VALUE;
-            previous[cellNum] = -1;
-            map[cellNum] = new Data(cellNum, costs[cellNum]);
+    // Query the routing hierarchy for the path from src to each destination. Returns null if one cannot be reached.
+    private Object[] findHierarchyPaths(int src, int[] destinations) {
+        ContractionHierarchy hierarchy = data.getRoutingHierarchy();
+        ArrayList<int[]> paths = new ArrayList<>();
+        ArrayList<Double> pathCosts = new ArrayList<>();
+        for (int dest : destinations) {
+            int[] path = hierarchy.getPath(src, dest);
+            if (path == null) {
+                return null;
+            }
+            paths.add(path);
+            pathCosts.add(getPathCost(path));
         }
+        return new Object[]{paths, pathCosts};
+    }
 
-        costs[src] = 0;
-        map[src].distance = 0;
-        pQueue.add(map[src]);
+    // Real cost of path
+    private double getPathCost(int[] path) {
+        double cost = 0;
+        for (int i = 0; i < path.length - 1; i++) {
+            cost += data.getEdgeWeight(path[i], path[i + 1], "c");
+        }
+        return cost;
+    }
 
-        while (!pQueue.isEmpty()) {
-            Data u = pQueue.poll();
-            if (!u.connected) {
-                u.connected = true;
-                connectedDests.remove(u.cellNum);
-                if (!connectedDests.isEmpty()) {
-                    for (int neighborCell : data.getNeighborCells(u.cellNum)) {
-                        if (neighborCell != 0) {
-                            double altDistance = costs[u.cellNum] + data.getModifiedEdgeRoutingCost(u.cellNum, neighborCell);
-                            if (altDistance < costs[neighborCell] && !map[neighborCell].connected) {
-                                costs[neighborCell] = altDistance;
-                                previous[neighborCell] = u.cellNum;
-
-                                map[neighborCell].distance = altDistance;
-                                pQueue.add(map[neighborCell]);
-                            }
-                        }
-                    }
-                } else {
-                    pQueue.clear();
+    // Search each pyramid level from the top down, each inside the cells around the paths found one level up.
+    // Returns the full resolution cells to search in, or null if a coarse level could not connect the cells.
+    private BitSet findCoarseCorridor(int src, int[] destinations) {
+        BitSet levelCells = null;
+        for (int level = pyramid.getNumLevels(); level > 0; level--) {
+            CostSurface levelCosts = pyramid.getLevel(level);
+            int levelSrc = pyramid.getLevelCell(src, level);
+            int[] levelDests = new int[destinations.length];
+            for (int i = 0; i < destinations.length; i++) {
+                levelDests[i] = pyramid.getLevelCell(destinations[i], level);
+            }
+            SearchSpace space = getSearchSpace(levelCosts.getNumCells() + 1);
+            BitSet searchCells = levelCells;
+            if (!search(levelCosts, space, levelSrc, levelDests, searchCells == null ? null : searchCells::get)) {
+                return null;
+            }
+            BitSet pathCells = new BitSet(levelCosts.getNumCells() + 1);
+            pathCells.set(levelSrc);
+            for (int dest : levelDests) {
+                for (int node = dest; node != levelSrc; node = space.previous[node]) {
+                    pathCells.set(node);
                 }
             }
+            levelCells = pyramid.expand(level, pathCells, coarseCorridorRadius);
         }
+        return levelCells;
+    }
+
+    // Dijkstra that only enters cells in area, or every cell if area is null. Returns null if a destination
+    // could not be reached inside the area.
+    private Object[] dijkstra(int src, int[] destinations, SearchArea area) {
+        CostSurface routingCosts = data.getModifiedRoutingCosts();
+        SearchSpace space = getSearchSpace(routingCosts.getNumCells() + 1);
+        if (!search(routingCosts, space, src, destinations, area) && area != null) {
+            return null;
+        }
+        int[] previous = space.previous;
 
         // Build paths for nodes of interest.
         ArrayList<int[]> paths = new ArrayList<>();
@@ -303,19 +406,142 @@ public class Solver {
             }
             pathList.add(0, node);
 
-            // Modify edge costs and recalculate real cost
-            double cost = 0;
-            for (int i = 0; i < pathList.size() - 1; i++) {
-                cost += data.getEdgeWeight(pathList.get(i), pathList.get(i + 1), "c");
-                data.updateModifiedEdgeRoutingCost(pathList.get(i), pathList.get(i + 1), edgeCostModification);
-                data.updateModifiedEdgeRoutingCost(pathList.get(i + 1), pathList.get(i), edgeCostModification);
-            }
-            pathCosts.add(cost);
-            paths.add(convertIntegerArray(pathList.toArray(new Integer[0])));
+            // Recalculate real cost
+            int[] path = convertIntegerArray(pathList.toArray(new Integer[0]));
+            pathCosts.add(getPathCost(path));
+            paths.add(path);
         }
         return new Object[]{paths, pathCosts};
     }
 
+    // Settle cells of routingCosts in area from src until every destination is settled, leaving the costs and
+    // previous cells in space. Returns whether every destination was reached.
+    private boolean search(CostSurface routingCosts, SearchSpace space, int src, int[] destinations, SearchArea area) {
+        HashSet<Integer> connectedDests = new HashSet<>();
+        for (int cell : destinations) {
+            connectedDests.add(cell);
+        }
+        IndexedMinQueue pQueue = space.pQueue;
+        double[] costs = space.costs;
+        int[] previous = space.previous;
+        boolean[] connected = space.connected;
+        space.reset();
+
+        costs[src] = 0;
+        space.reached[space.numReached++] = src;
+        pQueue.insertOrDecrease(src, 0);
+
+        while (!pQueue.isEmpty()) {
+            int u = pQueue.poll();
+            connected[u] = true;
+            connectedDests.remove(u);
+            if (!connectedDests.isEmpty()) {
+                int neighborMask = routingCosts.getNeighborMask(u);
+                for (int neighborNum = 0; neighborNum < 8; neighborNum++) {
+                    if ((neighborMask & (1 << neighborNum)) != 0) {
+                        int neighborCell = u + routingCosts.getNeighborOffset(neighborNum);
+                        if (area != null && !area.contains(neighborCell)) {
+                            continue;
+                        }
+                        double altDistance = costs[u] + routingCosts.getCost(u, neighborNum);
+                        if (altDistance < costs[neighborCell] && !connected[neighborCell]) {
+                            if (costs[neighborCell] == Double.MAX_VALUE) {
+                                space.reached[space.numReached++] = neighborCell;
+                            }
+                            costs[neighborCell] = altDistance;
+                            previous[neighborCell] = u;
+                            pQueue.insertOrDecrease(neighborCell, altDistance);
+                        }
+                    }
+                }
+            } else {
+                pQueue.clear();
+            }
+        }
+        return connectedDests.isEmpty();
+    }
+
+    // Modify routing costs of edges on paths, in both directions
+    private void updateModifiedEdgeRoutingCosts(ArrayList<int[]> paths, double edgeCostModification) {
+        for (int[] path : paths) {
+            for (int i = 0; i < path.length - 1; i++) {
+                data.updateModifiedEdgeRoutingCost(path[i], path[i + 1], edgeCostModification);
+                data.updateModifiedEdgeRoutingCost(path[i + 1], path[i], edgeCostModification);
+            }
+        }
+    }
+
+    // Get this thread's search buffers, sized for numNodes
+    private SearchSpace getSearchSpace(int numNodes) {
+        HashMap<Integer, SearchSpace> spaces = searchSpaces.get();
+        if (spaces == null) {
+            spaces = new HashMap<>();
+            searchSpaces.set(spaces);
+        }
+        SearchSpace space = spaces.get(numNodes);
+        if (space == null || !space.queueType.equals(queueType)) {
+            space = new SearchSpace(numNodes, queueType);
+            spaces.put(numNodes, space);
+        }
+        return space;
+    }
+
+    public void setNumThreads(int numThreads) {
+        this.numThreads = Math.max(numThreads, 1);
+    }
+
+    public void setRoundSize(int roundSize) {
+        this.roundSize = Math.max(roundSize, 1);
+    }
+
+    public void setQueueType(String queueType) {
+        this.queueType = queueType;
+    }
+
+    public void setCandidateGraphType(String candidateGraphType) {
+        this.candidateGraphType = candidateGraphType;
+    }
+
+    public void setCandidateNeighbors(int candidateNeighbors) {
+        this.candidateNeighbors = Math.max(candidateNeighbors, 1);
+    }
+
+    public void setUseRoutingHierarchy(boolean useRoutingHierarchy) {
+        this.useRoutingHierarchy = useRoutingHierarchy;
+    }
+
+    public void setCoarseLevels(int coarseLevels) {
+        this.coarseLevels = Math.max(coarseLevels, 0);
+    }
+
+    public void setCoarseCorridorRadius(int coarseCorridorRadius) {
+        this.coarseCorridorRadius = Math.max(coarseCorridorRadius, 0);
+    }
+
+    public void setCompareCoarseRouting(boolean compareCoarseRouting) {
+        this.compareCoarseRouting = compareCoarseRouting;
+    }
+
+    public void setCorridorSearch(boolean corridorSearch) {
+        this.corridorSearch = corridorSearch;
+    }
+
+    public void setCorridorShape(String corridorShape) {
+        this.corridorShape = corridorShape;
+    }
+
+    public void setCorridorWidth(double corridorWidth) {
+        this.corridorWidth = Math.max(corridorWidth, 0);
+    }
+
+    public void setMinCorridorMargin(int minCorridorMargin) {
+        this.minCorridorMargin = Math.max(minCorridorMargin, 1);
+    }
+
+    public int getNumCorridorWidenings() {
+        return numCorridorWidenings;
+    }
+
     public void setMessenger(TextArea messenger) {
         this.messenger = messenger;
     }
@@ -324,29 +550,185 @@ public class Solver {
         return messenger;
     }
 
-    private class Data implements Comparable<Data> {
+    // Searches for a range of nodes in one round, split across the pool
+    private class PathTask extends RecursiveAction {
+
+        private static final long serialVersionUID = 1L;
 
-        public int cellNum;
-        public double distance;
-        public boolean connected = false;
+        private int[] sourcesAndSinks;
+        private Object[][] nodePathsAndCosts;
+        private int start;
+        private int end;
 
-        public Data(int cellNum, double distance) {
-            this.cellNum = cellNum;
-            this.distance = distance;
+        public PathTask(int[] sourcesAndSinks, Object[][] nodePathsAndCosts, int start, int end) {
+            this.sourcesAndSinks = sourcesAndSinks;
+            this.nodePathsAndCosts = nodePathsAndCosts;
+            this.start = start;
+            this.end = end;
         }
 
         @Override
-        public int compareTo(Data other) {
-            return Double.valueOf(distance).compareTo(other.distance);
+        protected void compute() {
+            if (end - start > 1) {
+                int middle = (start + end) / 2;
+                invokeAll(new PathTask(sourcesAndSinks, nodePathsAndCosts, start, middle),
+                        new PathTask(sourcesAndSinks, nodePathsAndCosts, middle, end));
+            } else if (end - start == 1) {
+                nodePathsAndCosts[start] = findPaths(sourcesAndSinks[start], getLaterNodes(sourcesAndSinks, start), null);
+            }
+        }
+    }
+
+    // Cells a search may enter
+    private interface SearchArea {
+
+        public boolean contains(int cellNum);
+    }
+
+    // Cells around a source/sink pair that a search may enter, in cell coordinates
+    private class Corridor implements SearchArea {
+
+        private int x1;
+        private int y1;
+        private int x2;
+        private int y2;
+        private double margin;
+
+        public Corridor(int cell1, int cell2) {
+            x1 = (cell1 - 1) % data.getWidth();
+            y1 = (cell1 - 1) / data.getWidth();
+            x2 = (cell2 - 1) % data.getWidth();
+            y2 = (cell2 - 1) / data.getWidth();
+            margin = Math.max(corridorWidth * Math.hypot(x2 - x1, y2 - y1), minCorridorMargin);
+        }
+
+        private Corridor(Corridor corridor, double margin) {
+            x1 = corridor.x1;
+            y1 = corridor.y1;
+            x2 = corridor.x2;
+            y2 = corridor.y2;
+            this.margin = margin;
+        }
+
+        public Corridor widen() {
+            return new Corridor(this, 2 * margin);
         }
 
         @Override
-        public int hashCode() {
-            return cellNum;
+        public boolean contains(int cellNum) {
+            return contains((cellNum - 1) % data.getWidth(), (cellNum - 1) / data.getWidth());
+        }
+
+        // Ellipse has the pair as foci. Box is the pair's bounding box grown by margin.
+        private boolean contains(int x, int y) {
+            if (corridorShape.equals("box")) {
+                return x >= Math.min(x1, x2) - margin && x <= Math.max(x1, x2) + margin
+                        && y >= Math.min(y1, y2) - margin && y <= Math.max(y1, y2) + margin;
+            }
+            return Math.hypot(x - x1, y - y1) + Math.hypot(x - x2, y - y2) <= Math.hypot(x2 - x1, y2 - y1) + 2 * margin;
         }
 
-        public boolean equals(Data other) {
-            return distance == other.distance;
+        // Both shapes are convex, so the corridor holds the surface if it holds the corners
+        public boolean coversSurface() {
+            int maxX = data.getWidth() - 1;
+            int maxY = data.getHeight() - 1;
+            return contains(0, 0) && contains(maxX, 0) && contains(0, maxY) && contains(maxX, maxY);
+        }
+    }
+
+    // Searches routed coarse to fine, and how they compare with exact searches when those are run
+    private class CoarseRoutingReport {
+
+        private int numSearches;
+        private int numRefined;     // Searches that found every path inside the coarse corridor
+        private long time;
+        private int numComparedPaths;
+        private int numExactPaths;  // Paths that cost the same as the exact path
+        private double totalCost;
+        private double totalExactCost;
+        private double maxRelativeExcess;
+        private long exactTime;
+
+        public synchronized void add(boolean refined, long time, Object[] pathsAndCosts, Object[] exactPathsAndCosts, long exactTime) {
+            numSearches++;
+            if (refined) {
+                numRefined++;
+            }
+            this.time += time;
+            if (exactPathsAndCosts != null) {
+                this.exactTime += exactTime;
+                CostSurface routingCosts = data.getModifiedRoutingCosts();
+                ArrayList<int[]> paths = (ArrayList<int[]>) pathsAndCosts[0];
+                ArrayList<int[]> exactPaths = (ArrayList<int[]>) exactPathsAndCosts[0];
+                for (int i = 0; i < paths.size(); i++) {
+                    double cost = getRoutingCost(routingCosts, paths.get(i));
+                    double exactCost = getRoutingCost(routingCosts, exactPaths.get(i));
+                    numComparedPaths++;
+                    if (cost <= exactCost * (1 + 1e-9)) {
+                        numExactPaths++;
+                    }
+                    totalCost += cost;
+                    totalExactCost += exactCost;
+                    if (exactCost > 0) {
+                        maxRelativeExcess = Math.max(maxRelativeExcess, cost / exactCost - 1);
+                    }
+                }
+            }
+        }
+
+        private double getRoutingCost(CostSurface routingCosts, int[] path) {
+            double cost = 0;
+            for (int i = 0; i < path.length - 1; i++) {
+                cost += routingCosts.getEdgeCost(path[i], path[i + 1]);
+            }
+            return cost;
+        }
+
+        public void print() {
+            System.out.println("Coarse Routing: " + numRefined + " of " + numSearches + " searches refined in corridor, "
+                    + Math.round(time / 1e6) + " ms");
+            if (numComparedPaths > 0) {
+                System.out.println("Coarse vs Exact: " + numExactPaths + " of " + numComparedPaths + " paths exact, cost +"
+                        + round((totalCost / totalExactCost - 1) * 100, 4) + "% total, +" + round(maxRelativeExcess * 100, 4)
+                        + "% worst, " + Math.round(time / 1e6) + " ms vs " + Math.round(exactTime / 1e6) + " ms");
+            }
+        }
+    }
+
+    // Per-thread buffers reused by every dijkstra call on that thread
+    private class SearchSpace {
+
+        public String queueType;
+        public IndexedMinQueue pQueue;
+        public double[] costs;
+        public int[] previous;
+        public boolean[] connected;
+        public int[] reached;   // Cells given a cost by the last search
+        public int numReached;
+
+        public SearchSpace(int numNodes, String queueType) {
+            this.queueType = queueType;
+            if (queueType.equals("radix")) {
+                pQueue = new RadixHeap(numNodes);
+            } else {
+                pQueue = new IndexedMinHeap(numNodes);
+            }
+            costs = new double[numNodes];
+            previous = new int[numNodes];
+            connected = new boolean[numNodes];
+            reached = new int[numNodes];
+            Arrays.fill(costs, Double.MAX_VALUE);
+            Arrays.fill(previous, -1);
+        }
+
+        // Clear the cells of the last search, so small searches stay cheap on large surfaces
+        public void reset() {
+            for (int i = 0; i < numReached; i++) {
+                costs[reached[i]] = Double.MAX_VALUE;
+                previous[reached[i]] = -1;
+                connected[reached[i]] = false;
+            }
+            numReached = 0;
         }
     }
 }
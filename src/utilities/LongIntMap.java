@@ -0,0 +1,76 @@
+package utilities;
+
+import java.util.Arrays;
+
+/**
+ * Open addressing map from long keys to non-negative int values, without boxing either.
+ *
+ * @author yaw
+ */
+public class LongIntMap {
+
+    private long[] keys;
+    private int[] values;   // -1 for empty slots
+    private int size;
+
+    public LongIntMap() {
+        this(32);
+    }
+
+    // Sized to hold expectedSize keys without growing
+    public LongIntMap(int expectedSize) {
+        int capacity = 64;
+        while (capacity < 2 * expectedSize) {
+            capacity *= 2;
+        }
+        keys = new long[capacity];
+        values = new int[capacity];
+        Arrays.fill(values, -1);
+    }
+
+    // Value of key, -1 if absent
+    public int get(long key) {
+        int slot = getSlot(key);
+        while (values[slot] >= 0) {
+            if (keys[slot] == key) {
+                return values[slot];
+            }
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        return -1;
+    }
+
+    // Value must be non-negative
+    public void put(long key, int value) {
+        if (2 * (size + 1) > keys.length) {
+            long[] oldKeys = keys;
+            int[] oldValues = values;
+            keys = new long[2 * oldKeys.length];
+            values = new int[2 * oldKeys.length];
+            Arrays.fill(values, -1);
+            size = 0;
+            for (int slot = 0; slot < oldKeys.length; slot++) {
+                if (oldValues[slot] >= 0) {
+                    put(oldKeys[slot], oldValues[slot]);
+                }
+            }
+        }
+        int slot = getSlot(key);
+        while (values[slot] >= 0 && keys[slot] != key) {
+            slot = (slot + 1) & (keys.length - 1);
+        }
+        if (values[slot] < 0) {
+            size++;
+        }
+        keys[slot] = key;
+        values[slot] = value;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    private int getSlot(long key) {
+        return (int) ((key * 0x9E3779B97F4A7C15L) >>> 32) & (keys.length - 1);
+    }
+}
@@ -0,0 +1,121 @@
+package solver;
+
+import dataStore.ArrayCostSurface;
+import dataStore.CostSurface;
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Checks contraction hierarchy paths against plain Dijkstra on small seeded cost surfaces.
+ *
+ * @author yaw
+ */
+public class ContractionHierarchyTest {
+
+    @Test
+    public void matchesDijkstraCosts() {
+        CostSurface costs = makeSurface(13, 9, 3, 0);
+        checkAllPairs(costs, new ContractionHierarchy(costs));
+    }
+
+    // Blocked cells split off unreachable parts of the surface
+    @Test
+    public void matchesDijkstraWithBlockedCells() {
+        CostSurface costs = makeSurface(10, 11, 8, 15);
+        checkAllPairs(costs, new ContractionHierarchy(costs));
+    }
+
+    @Test
+    public void loadsSavedHierarchy() throws IOException {
+        CostSurface costs = makeSurface(9, 7, 4, 5);
+        File file = File.createTempFile("hierarchy", ".ch");
+        try {
+            new ContractionHierarchy(costs).save(file);
+            ContractionHierarchy hierarchy = ContractionHierarchy.load(file);
+            assertEquals(9, hierarchy.getWidth());
+            assertEquals(7, hierarchy.getHeight());
+            checkAllPairs(costs, hierarchy);
+        } finally {
+            file.delete();
+        }
+    }
+
+    // Random directed costs, so the cost from a cell to a neighbor differs from the cost back
+    private static CostSurface makeSurface(int width, int height, long seed, int numBlocked) {
+        Random random = new Random(seed);
+        ArrayCostSurface costs = new ArrayCostSurface(width, height);
+        for (int cellNum = 1; cellNum <= width * height; cellNum++) {
+            int neighborMask = costs.getNeighborMask(cellNum);
+            for (int neighborNum = 0; neighborNum < 8; neighborNum++) {
+                if ((neighborMask & (1 << neighborNum)) != 0) {
+                    double length = neighborNum % 2 == 0 ? Math.sqrt(2) : 1;
+                    costs.setCost(cellNum, neighborNum, length * (1 + random.nextInt(20) / 4.0));
+                }
+            }
+        }
+        for (int i = 0; i < numBlocked; i++) {
+            int cellNum = 1 + random.nextInt(width * height);
+            for (int neighborNum = 0; neighborNum < 8; neighborNum++) {
+                costs.setCost(cellNum, neighborNum, Double.MAX_VALUE);
+                int neighborCell = cellNum + costs.getNeighborOffset(neighborNum);
+                if ((costs.getNeighborMask(cellNum) & (1 << neighborNum)) != 0) {
+                    costs.setCost(neighborCell, costs.getNeighborNum(neighborCell, cellNum), Double.MAX_VALUE);
+                }
+            }
+        }
+        return costs;
+    }
+
+    private static void checkAllPairs(CostSurface costs, ContractionHierarchy hierarchy) {
+        int numCells = costs.getNumCells();
+        for (int src = 1; src <= numCells; src++) {
+            double[] distances = dijkstra(costs, src);
+            for (int dest = 1; dest <= numCells; dest++) {
+                int[] path = hierarchy.getPath(src, dest);
+                if (distances[dest] == Double.MAX_VALUE) {
+                    assertNull(path);
+                    continue;
+                }
+                assertNotNull(path);
+                assertEquals(src, path[0]);
+                assertEquals(dest, path[path.length - 1]);
+                double pathCost = 0;
+                for (int i = 0; i < path.length - 1; i++) {
+                    double cost = costs.getEdgeCost(path[i], path[i + 1]);
+                    assertTrue("Path steps between cells that are not joined", cost < Double.MAX_VALUE);
+                    pathCost += cost;
+                }
+                assertEquals("Cost from " + src + " to " + dest, distances[dest], pathCost, 1e-9 * distances[dest]);
+            }
+        }
+    }
+
+    // Cheapest cost from src to every cell, Double.MAX_VALUE where it cannot be reached
+    private static double[] dijkstra(CostSurface costs, int src) {
+        int numCells = costs.getNumCells();
+        double[] distances = new double[numCells + 1];
+        Arrays.fill(distances, Double.MAX_VALUE);
+        IndexedMinHeap queue = new IndexedMinHeap(numCells + 1);
+        distances[src] = 0;
+        queue.insertOrDecrease(src, 0);
+        while (!queue.isEmpty()) {
+            int cellNum = queue.poll();
+            int neighborMask = costs.getNeighborMask(cellNum);
+            for (int neighborNum = 0; neighborNum < 8; neighborNum++) {
+                double cost = costs.getCost(cellNum, neighborNum);
+                if ((neighborMask & (1 << neighborNum)) != 0 && cost < Double.MAX_VALUE) {
+                    int neighborCell = cellNum + costs.getNeighborOffset(neighborNum);
+                    if (distances[cellNum] + cost < distances[neighborCell]) {
+                        distances[neighborCell] = distances[cellNum] + cost;
+                        queue.insertOrDecrease(neighborCell, distances[neighborCell]);
+                    }
+                }
+            }
+        }
+        return distances;
+    }
+}
@@ -0,0 +1,126 @@
+package solver;
+
+import dataStore.DataStorer;
+import dataStore.Edge;
+import java.math.BigInteger;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Checks Delaunay against the brute force triangulation it replaced: cells i and j are joined if some third cell k
+ * makes a triangle with them whose circumcircle holds no other cell.
+ *
+ * @author yaw
+ */
+public class DelaunayTest {
+
+    @Test
+    public void matchesBruteForceOnRandomCells() {
+        for (long seed = 1; seed <= 20; seed++) {
+            checkRandomCells(200, 150, 40, seed);
+        }
+    }
+
+    // Small surfaces put many cells on shared circles and lines
+    @Test
+    public void matchesBruteForceOnCrowdedCells() {
+        for (long seed = 1; seed <= 20; seed++) {
+            checkRandomCells(8, 6, 20, seed);
+        }
+    }
+
+    @Test
+    public void joinsCollinearCellsInOrder() {
+        DataStorer data = makeData(20, 20);
+        int[] cells = {data.xyToVectorized(2, 2), data.xyToVectorized(8, 8), data.xyToVectorized(5, 5), data.xyToVectorized(11, 11)};
+        HashSet<Edge> expected = new HashSet<>();
+        expected.add(new Edge(cells[0], cells[2]));
+        expected.add(new Edge(cells[2], cells[1]));
+        expected.add(new Edge(cells[1], cells[3]));
+        assertEquals(expected, new Delaunay(data).run(cells));
+    }
+
+    @Test
+    public void mergesSharedCells() {
+        DataStorer data = makeData(20, 20);
+        int[] cells = {data.xyToVectorized(2, 3), data.xyToVectorized(9, 4), data.xyToVectorized(2, 3), data.xyToVectorized(5, 12)};
+        HashSet<Edge> edges = new Delaunay(data).run(cells);
+        assertEquals(3, edges.size());
+        for (Edge e : edges) {
+            assertTrue(e.v1 != e.v2);
+        }
+    }
+
+    private static void checkRandomCells(int width, int height, int numCells, long seed) {
+        DataStorer data = makeData(width, height);
+        Random random = new Random(seed);
+        LinkedHashSet<Integer> cellSet = new LinkedHashSet<>();
+        while (cellSet.size() < numCells) {
+            cellSet.add(1 + random.nextInt(width * height));
+        }
+        int[] cells = cellSet.stream().mapToInt(Integer::intValue).toArray();
+        assertEquals("Seed " + seed, getBruteForceEdges(data, cells), new Delaunay(data).run(cells));
+    }
+
+    private static DataStorer makeData(int width, int height) {
+        DataStorer data = new DataStorer(null, null, null);
+        data.setWidth(width);
+        data.setHeight(height);
+        return data;
+    }
+
+    private static HashSet<Edge> getBruteForceEdges(DataStorer data, int[] cells) {
+        long[] xs = new long[cells.length];
+        long[] ys = new long[cells.length];
+        for (int i = 0; i < cells.length; i++) {
+            double[] xy = data.cellLocationToRawXY(cells[i]);
+            xs[i] = (long) xy[0];
+            ys[i] = (long) xy[1];
+        }
+        HashSet<Edge> edges = new HashSet<>();
+        for (int i = 0; i < cells.length; i++) {
+            for (int j = i + 1; j < cells.length; j++) {
+                for (int k = j + 1; k < cells.length; k++) {
+                    if (orient(xs, ys, i, j, k) != 0 && isEmptyCircle(xs, ys, i, j, k)) {
+                        edges.add(new Edge(cells[i], cells[j]));
+                        edges.add(new Edge(cells[j], cells[k]));
+                        edges.add(new Edge(cells[i], cells[k]));
+                    }
+                }
+            }
+        }
+        return edges;
+    }
+
+    private static boolean isEmptyCircle(long[] xs, long[] ys, int a, int b, int c) {
+        int sign = Long.signum(orient(xs, ys, a, b, c));
+        for (int d = 0; d < xs.length; d++) {
+            if (d != a && d != b && d != c && inCircle(xs, ys, a, b, c, d) * sign > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private static long orient(long[] xs, long[] ys, int a, int b, int c) {
+        return (xs[b] - xs[a]) * (ys[c] - ys[a]) - (ys[b] - ys[a]) * (xs[c] - xs[a]);
+    }
+
+    // Positive if d is inside the circle through a, b, and c taken counterclockwise
+    private static int inCircle(long[] xs, long[] ys, int a, int b, int c, int d) {
+        BigInteger[][] rows = new BigInteger[3][];
+        int[] points = {a, b, c};
+        for (int i = 0; i < 3; i++) {
+            long dx = xs[points[i]] - xs[d];
+            long dy = ys[points[i]] - ys[d];
+            rows[i] = new BigInteger[]{BigInteger.valueOf(dx), BigInteger.valueOf(dy), BigInteger.valueOf(dx * dx + dy * dy)};
+        }
+        BigInteger det = rows[0][0].multiply(rows[1][1].multiply(rows[2][2]).subtract(rows[1][2].multiply(rows[2][1])))
+                .subtract(rows[0][1].multiply(rows[1][0].multiply(rows[2][2]).subtract(rows[1][2].multiply(rows[2][0]))))
+                .add(rows[0][2].multiply(rows[1][0].multiply(rows[2][1]).subtract(rows[1][1].multiply(rows[2][0]))));
+        return det.signum();
+    }
+}
@@ -0,0 +1,174 @@
+package solver;
+
+import dataStore.DataStorer;
+import dataStore.Edge;
+import dataStore.HeuristicGraph;
+import dataStore.LinearComponent;
+import dataStore.Sink;
+import dataStore.Source;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Checks that lower bound pruning and incremental pair costs build the same network as evaluating every pair
+ * from scratch, on small seeded grid graphs.
+ *
+ * @author yaw
+ */
+public class HeuristicTest {
+
+    private static final int GRID_WIDTH = 7;
+    private static final int GRID_HEIGHT = 6;
+
+    @Test
+    public void capacityModelMatchesUnpruned() {
+        for (long seed = 1; seed <= 5; seed++) {
+            checkAgainstUnpruned(seed, 1, 1);
+            checkAgainstUnpruned(seed, 3, 1);
+        }
+    }
+
+    // Capture is paid for, so only some pairs have a negative cost
+    @Test
+    public void priceModelMatchesUnpruned() {
+        for (long seed = 1; seed <= 5; seed++) {
+            checkAgainstUnpruned(seed, 1, 2);
+            checkAgainstUnpruned(seed, 3, 2);
+        }
+    }
+
+    private static void checkAgainstUnpruned(long seed, int numPairs, int modelVersion) {
+        double[] expected = solve(seed, false, false, numPairs, modelVersion);
+        String run = "Seed " + seed + ", " + numPairs + " pairs, model " + modelVersion;
+        assertTrue(run + " captured nothing", expected[0] > 0);
+        assertResultEquals(run + ", pruned", expected, solve(seed, true, false, numPairs, modelVersion));
+        assertResultEquals(run + ", incremental", expected, solve(seed, false, true, numPairs, modelVersion));
+        assertResultEquals(run + ", pruned and incremental", expected, solve(seed, true, true, numPairs, modelVersion));
+    }
+
+    private static void assertResultEquals(String run, double[] expected, double[] actual) {
+        assertEquals(run, expected.length, actual.length);
+        for (int i = 0; i < expected.length; i++) {
+            assertEquals(run + ", value " + i, expected[i], actual[i], 1e-9 * Math.max(1, Math.abs(expected[i])));
+        }
+    }
+
+    // Captured amount, then the remaining capacity of each source and sink, then the hosting amount and size of
+    // each arc. Each run gets fresh data, since solve does not reset the wells of sinks.
+    private static double[] solve(long seed, boolean prune, boolean incremental, int numPairs, int modelVersion) {
+        DataStorer data = makeData(seed, modelVersion == 2 ? -150 : 0);
+        Heuristic heuristic = new Heuristic(data);
+        heuristic.setPrune(prune);
+        heuristic.setIncremental(incremental);
+        heuristic.solve(numPairs, modelVersion);
+
+        ArrayList<Double> result = new ArrayList<>();
+        double captured = 0;
+        for (Source src : data.getSources()) {
+            captured += src.getProductionRate() - src.getRemainingCapacity();
+        }
+        result.add(captured);
+        for (Source src : data.getSources()) {
+            result.add(src.getRemainingCapacity());
+        }
+        for (Sink snk : data.getSinks()) {
+            result.add(snk.getRemainingCapacity());
+            result.add((double) snk.getNumWells());
+        }
+        HeuristicGraph graph = heuristic.getGraph();
+        for (int arc = 0; arc < graph.getNumArcs(); arc++) {
+            result.add(graph.getHostingAmount(arc));
+            result.add((double) graph.getSize(arc));
+        }
+        return result.stream().mapToDouble(Double::doubleValue).toArray();
+    }
+
+    // Grid graph with seeded edge costs, sources, and sinks, with captureCredit added to capture costs. Costs are
+    // fractional so no two pairs tie.
+    private static DataStorer makeData(long seed, double captureCredit) {
+        Random random = new Random(seed);
+        DataStorer data = new DataStorer(null, null, null);
+        int width = 3 * GRID_WIDTH;
+        data.setWidth(width);
+        data.setHeight(3 * GRID_HEIGHT);
+        data.setCrf(0.1);
+        data.setProjectLength(30);
+
+        int[] vertices = new int[GRID_WIDTH * GRID_HEIGHT];
+        for (int y = 0; y < GRID_HEIGHT; y++) {
+            for (int x = 0; x < GRID_WIDTH; x++) {
+                vertices[y * GRID_WIDTH + x] = data.xyToVectorized(3 * x + 2, 3 * y + 2);
+            }
+        }
+        HashMap<Edge, Double> edgeCosts = new HashMap<>();
+        HashMap<Edge, Double> constructionCosts = new HashMap<>();
+        HashMap<Edge, Double> rightOfWayCosts = new HashMap<>();
+        for (int y = 0; y < GRID_HEIGHT; y++) {
+            for (int x = 0; x < GRID_WIDTH; x++) {
+                int vertex = vertices[y * GRID_WIDTH + x];
+                ArrayList<Integer> neighbors = new ArrayList<>();
+                if (x + 1 < GRID_WIDTH) {
+                    neighbors.add(vertices[y * GRID_WIDTH + x + 1]);
+                }
+                if (y + 1 < GRID_HEIGHT) {
+                    neighbors.add(vertices[(y + 1) * GRID_WIDTH + x]);
+                }
+                for (int neighbor : neighbors) {
+                    Edge e = new Edge(vertex, neighbor);
+                    double constructionCost = 3 * (1 + random.nextDouble());
+                    double rightOfWayCost = random.nextDouble();
+                    constructionCosts.put(e, constructionCost);
+                    rightOfWayCosts.put(e, rightOfWayCost);
+                    edgeCosts.put(e, constructionCost + rightOfWayCost);
+                }
+            }
+        }
+        data.setGraphVertices(vertices);
+        data.setGraphEdgeCosts(edgeCosts);
+        data.setGraphEdgeConstructionCosts(constructionCosts);
+        data.setGraphEdgeRightOfWayCosts(rightOfWayCosts);
+
+        LinearComponent[] linearComponents = {new LinearComponent(data), new LinearComponent(data)};
+        linearComponents[0].setConSlope(0.115719152);
+        linearComponents[0].setConIntercept(0.431655132);
+        linearComponents[1].setConSlope(0.078306697);
+        linearComponents[1].setConIntercept(0.770037049);
+        data.setLinearComponents(linearComponents);
+
+        // Sources and sinks on distinct vertices
+        int[] order = random.ints(0, vertices.length).distinct().limit(9).toArray();
+        Source[] sources = new Source[6];
+        double totalProduction = 0;
+        for (int srcNum = 0; srcNum < sources.length; srcNum++) {
+            Source src = new Source(data);
+            src.setLabel("Source" + srcNum);
+            src.setCellNum(vertices[order[srcNum]]);
+            src.setOpeningCost(100 + 2000 * random.nextDouble());
+            src.setOMCost(100 * random.nextDouble());
+            src.setCaptureCost(30 + 60 * random.nextDouble() + captureCredit);
+            src.setProductionRate(1 + 9 * random.nextDouble());
+            sources[srcNum] = src;
+            totalProduction += src.getProductionRate();
+        }
+        Sink[] sinks = new Sink[3];
+        for (int snkNum = 0; snkNum < sinks.length; snkNum++) {
+            Sink snk = new Sink(data);
+            snk.setLabel("Sink" + snkNum);
+            snk.setCellNum(vertices[order[sources.length + snkNum]]);
+            snk.setCapacity(200 + 400 * random.nextDouble());
+            snk.setOpeningCost(10 + 30 * random.nextDouble());
+            snk.setWellCapacity(0.5 + 0.3 * random.nextDouble());
+            snk.setWellOpeningCost(3 + 2 * random.nextDouble());
+            snk.setWellOMCost(0.15);
+            snk.setInjectionCost(2.7);
+            sinks[snkNum] = snk;
+        }
+        data.setSources(sources);
+        data.setSinks(sinks);
+        data.setTargetCaptureAmount(0.7 * totalProduction);
+        return data;
+    }
+}
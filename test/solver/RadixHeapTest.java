@@ -0,0 +1,80 @@
+package solver;
+
+import java.util.Random;
+import static org.junit.Assert.*;
+import org.junit.Test;
+
+/**
+ * Runs the same monotone operations on RadixHeap and IndexedMinHeap and checks they pop in the same order.
+ *
+ * @author yaw
+ */
+public class RadixHeapTest {
+
+    private static final int CAPACITY = 256;
+
+    @Test
+    public void pollsInHeapOrder() {
+        Random random = new Random(17);
+        RadixHeap radixHeap = new RadixHeap(CAPACITY);
+        IndexedMinHeap heap = new IndexedMinHeap(CAPACITY);
+        long last = 0;
+        for (int step = 0; step < 50000; step++) {
+            if (heap.isEmpty() || random.nextInt(3) > 0) {
+                int id = random.nextInt(CAPACITY);
+                double key = getKey(last, random.nextInt(40), id);
+                heap.insertOrDecrease(id, key);
+                radixHeap.insertOrDecrease(id, key);
+            } else {
+                assertEquals(heap.peekKey(), radixHeap.peekKey(), 0);
+                last = (long) (heap.peekKey() * 8);
+                assertEquals(heap.poll(), radixHeap.poll());
+            }
+            assertEquals(heap.size(), radixHeap.size());
+        }
+        while (!heap.isEmpty()) {
+            assertEquals(heap.poll(), radixHeap.poll());
+        }
+        assertTrue(radixHeap.isEmpty());
+    }
+
+    @Test
+    public void clearEmptiesForReuse() {
+        Random random = new Random(5);
+        RadixHeap radixHeap = new RadixHeap(CAPACITY);
+        IndexedMinHeap heap = new IndexedMinHeap(CAPACITY);
+        for (int search = 0; search < 20; search++) {
+            for (int i = 0; i < 100; i++) {
+                int id = random.nextInt(CAPACITY);
+                double key = getKey(0, random.nextInt(1000), id);
+                heap.insertOrDecrease(id, key);
+                radixHeap.insertOrDecrease(id, key);
+            }
+            for (int i = 0; i < 30; i++) {
+                assertEquals(heap.poll(), radixHeap.poll());
+            }
+            heap.clear();
+            radixHeap.clear();
+            assertTrue(radixHeap.isEmpty());
+            for (int id = 0; id < CAPACITY; id++) {
+                assertFalse(radixHeap.contains(id));
+            }
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsKeysBelowLastPolled() {
+        RadixHeap radixHeap = new RadixHeap(4);
+        radixHeap.insertOrDecrease(0, 2.5);
+        radixHeap.insertOrDecrease(1, 3);
+        radixHeap.poll();
+        radixHeap.insertOrDecrease(2, 1);
+    }
+
+    // Key at least last / 8 that no other id can share, so both heaps have one correct order. Eighths keep the
+    // keys exact while spreading them over the low bits.
+    private static double getKey(long last, int offset, int id) {
+        long units = (last / CAPACITY + 1 + offset) * CAPACITY + id;
+        return units / 8.0;
+    }
+}